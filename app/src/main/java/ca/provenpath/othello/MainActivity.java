@@ -42,6 +42,7 @@ import ca.provenpath.othello.game.observer.AnalysisValueNotification;
 import ca.provenpath.othello.game.observer.EngineNotification;
 import ca.provenpath.othello.game.observer.GameNotification;
 import ca.provenpath.othello.game.observer.MoveNotification;
+import ca.provenpath.othello.game.observer.PrincipalVariationNotification;
 import ca.provenpath.othello.persistence.KeyValue;
 import ca.provenpath.othello.persistence.StateDatabase;
 
@@ -321,7 +322,8 @@ public class MainActivity extends AppCompatActivity {
             }
         } else if (notification instanceof AnalysisNotification) {
             mBoardAdaptor.draw((AnalysisNotification) notification);
-        } else if (notification instanceof EngineNotification) {
+        } else if (notification instanceof EngineNotification
+                || notification instanceof PrincipalVariationNotification) {
 
             StatisticsFragment statisticsFragment =
                     (StatisticsFragment) getSupportFragmentManager().findFragmentById(R.id.statistics_fragment);
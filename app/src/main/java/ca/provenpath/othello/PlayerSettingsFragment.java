@@ -21,6 +21,7 @@ package ca.provenpath.othello;
 
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.preference.ListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.util.Log;
@@ -40,6 +41,14 @@ public class PlayerSettingsFragment extends PreferenceFragment
     public final static String KEY_MAX_TIME_MS = "pref_max_time";
     public final static String KEY_MIN_TIME_MS = "pref_min_time";
     public final static String KEY_DELAY_TIME_MS = "pref_delay_time";
+    public final static String KEY_ENDGAME_EMPTIES = "pref_endgame_empties";
+    public final static String KEY_WLD_EMPTIES = "pref_wld_empties";
+    public final static String KEY_THREADS = "pref_threads";
+    public final static String KEY_LAZY_SMP = "pref_lazy_smp";
+    public final static String KEY_SPLIT_INTERIOR = "pref_split_interior";
+    public final static String KEY_PROBCUT = "pref_probcut";
+    public final static String KEY_PONDER = "pref_ponder";
+    public final static String KEY_MULTI_PV = "pref_multi_pv";
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -64,6 +73,11 @@ public class PlayerSettingsFragment extends PreferenceFragment
         onSharedPreferenceChanged(prefs, KEY_DELAY_TIME_MS);
         onSharedPreferenceChanged(prefs, KEY_MAX_TIME_MS);
         onSharedPreferenceChanged(prefs, KEY_MIN_TIME_MS);
+        onSharedPreferenceChanged(prefs, KEY_ENDGAME_EMPTIES);
+        onSharedPreferenceChanged(prefs, KEY_WLD_EMPTIES);
+        onSharedPreferenceChanged(prefs, KEY_THREADS);
+        onSharedPreferenceChanged(prefs, KEY_PONDER);
+        onSharedPreferenceChanged(prefs, KEY_MULTI_PV);
 
         prefs.registerOnSharedPreferenceChangeListener(this);
     }
@@ -91,8 +105,17 @@ public class PlayerSettingsFragment extends PreferenceFragment
             try {
 
                 switch (key) {
+                    case KEY_ENDGAME_EMPTIES:
+                    case KEY_WLD_EMPTIES:
+                    case KEY_PONDER:
+                        // Set summary to be the entry of the selected value, e.g., "Never"
+                        pref.setSummary(((ListPreference) pref).getEntry());
+                        break;
+
                     case KEY_STRATEGY:
                     case KEY_LOOKAHEAD:
+                    case KEY_THREADS:
+                    case KEY_MULTI_PV:
                         // Set summary to be the user-description for the selected value
                         pref.setSummary(sharedPreferences.getString(key, ""));
                         break;
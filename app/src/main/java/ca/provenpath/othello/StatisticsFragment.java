@@ -10,8 +10,11 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 import ca.provenpath.othello.game.ComputerPlayer;
 import ca.provenpath.othello.game.GameExecutor;
+import ca.provenpath.othello.game.Move;
 import ca.provenpath.othello.game.Player;
+import ca.provenpath.othello.game.Position;
 import ca.provenpath.othello.game.observer.EngineNotification;
+import ca.provenpath.othello.game.observer.PrincipalVariationNotification;
 
 import java.util.Locale;
 
@@ -52,6 +55,11 @@ public class StatisticsFragment extends Fragment {
 
     public void update(GameExecutor.Tracker tracker) {
 
+        if (tracker.getNotification() instanceof PrincipalVariationNotification) {
+            updatePrincipalVariation((PrincipalVariationNotification) tracker.getNotification());
+            return;
+        }
+
         StringBuilder playerText = new StringBuilder();
         StringBuilder progressText = new StringBuilder();
 
@@ -72,6 +80,11 @@ public class StatisticsFragment extends Fragment {
 
             EngineNotification engine = (EngineNotification) tracker.getNotification();
 
+            if (engine.getDepth() == 0) {
+                // A new search, the previous line no longer applies
+                drawText(R.id.statistics_pv, "");
+            }
+
             progressText.append(String.format("Depth %d", engine.getDepth()));
             progressText.append(" - ");
             progressText.append(
@@ -90,6 +103,26 @@ public class StatisticsFragment extends Fragment {
 
     }
 
+    private void updatePrincipalVariation(PrincipalVariationNotification pv) {
+
+        StringBuilder pvText = new StringBuilder();
+
+        pvText.append(String.format(Locale.US, "Depth %d -", pv.getDepth()));
+        for (Move move : pv.getMoves()) {
+            pvText.append(' ');
+            pvText.append(squareName(move.getPosition()));
+        }
+
+        drawText(R.id.statistics_pv, pvText.toString());
+    }
+
+    /**
+     * Name a square the usual way, by column letter and row number, e.g., "d3".
+     */
+    private static String squareName(Position position) {
+        return String.format(Locale.US, "%c%d", (char) ('a' + position.getY()), position.getX() + 1);
+    }
+
     private void drawText(int viewId, String msg) {
         View view = getView();
         if (view != null) {
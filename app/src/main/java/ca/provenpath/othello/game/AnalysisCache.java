@@ -0,0 +1,212 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import android.util.Log;
+import ca.provenpath.othello.game.observer.AnalysisBoardNotification;
+import ca.provenpath.othello.game.observer.EngineNotification;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Best moves of the positions of a game, for hints.
+ * <p>
+ * While a human is to move, a background thread analyzes the position
+ * with iterative deepening.  The best move of every completed depth is
+ * cached by the hash of the board, so a hint is answered immediately with
+ * the deepest result available.  The analysis searches on this single
+ * low priority thread and stops at a fixed depth.
+ * </p>
+ * <p>
+ * Each color has its own engine, so that the transposition table carries
+ * over from one position of the game to the next.
+ * </p>
+ *
+ * @author npapke
+ */
+public class AnalysisCache {
+    public final static String TAG = AnalysisCache.class.getSimpleName();
+
+    /**
+     * Analysis stops at this depth.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    /**
+     * The best move of a position.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static class Hint {
+        /**
+         * The depth searched.
+         */
+        private final int depth;
+        private final Position position;
+
+        /**
+         * The value of the move, not normalized.
+         */
+        private final int value;
+    }
+
+    private final int maxDepth;
+    private final Map<Long, Hint> hints = new ConcurrentHashMap<>();
+    private final Map<BoardValue, SearchEngine> engines = new EnumMap<>(BoardValue.class);
+    private final Object lock = new Object();
+    private Thread thread;
+    private ComputerPlayer analyst;
+
+    public AnalysisCache() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    AnalysisCache(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Start analyzing a position in the background.  Any earlier analysis
+     * is stopped.
+     *
+     * @param board  the board
+     * @param player the player to move
+     */
+    public void analyze(Board board, BoardValue player) {
+        synchronized (lock) {
+            stop();
+
+            long key = board.getHashKey(player);
+            Hint hint = hints.get(key);
+            if ((hint != null && hint.getDepth() >= maxDepth) || !board.hasValidMove(player)) {
+                return;
+            }
+
+            SearchEngine engine = engines.get(player);
+            if (engine == null) {
+                engine = new SearchEngine(player);
+                engines.put(player, engine);
+            }
+
+            // No time limit: the search runs to the maximum depth unless stopped
+            ComputerPlayer computerPlayer = new ComputerPlayer(player);
+            computerPlayer.setMaxDepth(maxDepth);
+            computerPlayer.setThreads(1);
+
+            Board copy = new Board(board);
+            SearchEngine searchEngine = engine;
+            analyst = computerPlayer;
+            thread = new Thread(() -> run(searchEngine, computerPlayer, copy, key), "analysis-" + player);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the analysis and wait until it has stopped.
+     */
+    public void stop() {
+        synchronized (lock) {
+            if (thread == null) {
+                return;
+            }
+
+            analyst.interruptMove();
+
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            thread = null;
+            analyst = null;
+        }
+    }
+
+    /**
+     * Is a position being analyzed?
+     *
+     * @return true while the analysis runs
+     */
+    public boolean isAnalyzing() {
+        synchronized (lock) {
+            return thread != null && thread.isAlive();
+        }
+    }
+
+    /**
+     * Get the deepest analysis of a position.
+     *
+     * @param board  the board
+     * @param player the player to move
+     * @return the best move, or null if the position has not been analyzed yet
+     */
+    public Hint get(Board board, BoardValue player) {
+        return hints.get(board.getHashKey(player));
+    }
+
+    /**
+     * Forget all positions, e.g., for a new game.
+     */
+    public void clear() {
+        synchronized (lock) {
+            stop();
+            hints.clear();
+        }
+    }
+
+    void run(SearchEngine engine, ComputerPlayer player, Board board, long key) {
+        int[] depth = {0};
+
+        // The result of a search stopped before completing a depth is not
+        // kept, so that a hint falls back to a search of its own
+        engine.search(player, board, notification -> {
+            if (notification instanceof EngineNotification) {
+                depth[0] = ((EngineNotification) notification).getDepth();
+            } else if (notification instanceof AnalysisBoardNotification) {
+                // Sent once a depth is complete
+                AnalysisBoardNotification best = (AnalysisBoardNotification) notification;
+                if (depth[0] < 1 || best.getPosition() == null) {
+                    return;
+                }
+
+                Hint hint = hints.get(key);
+                if (hint == null || hint.getDepth() <= depth[0]) {
+                    hints.put(key, new Hint(depth[0], best.getPosition(), best.getValue()));
+                }
+            }
+        });
+
+        Log.i(TAG, String.format("Analyzed %s to depth %d", player, depth[0]));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+/**
+ * Bit twiddling on 64-bit boards.  Bit <code>n</code> corresponds to
+ * linear position <code>n</code>, i.e., <code>x * BOARD_SIZE + y</code>.
+ * <p>
+ * Shifting by one changes the column (<code>y</code>), shifting by
+ * <code>BOARD_SIZE</code> changes the row (<code>x</code>).  Shifts that
+ * change the column are masked to prevent runs wrapping around the edge.
+ * </p>
+ *
+ * @author npapke
+ */
+public final class BitBoard {
+
+    /**
+     * All cells except those in the first column.
+     */
+    static final long NOT_FIRST_COLUMN = 0xfefefefefefefefeL;
+
+    /**
+     * All cells except those in the last column.
+     */
+    static final long NOT_LAST_COLUMN = 0x7f7f7f7f7f7f7f7fL;
+
+    /**
+     * Cells in the first or last column.
+     */
+    private static final long SIDE_COLUMNS = 0x8181818181818181L;
+
+    /**
+     * Cells in the first or last row.
+     */
+    private static final long SIDE_ROWS = 0xff000000000000ffL;
+
+    /**
+     * Directions as (x, y) steps.  The first half moves towards higher
+     * linear positions, the second half towards lower ones.
+     */
+    private static final int[][] DIRECTIONS = {
+            {0, 1}, {1, 0}, {1, 1}, {1, -1},
+            {0, -1}, {-1, 0}, {-1, -1}, {-1, 1}
+    };
+
+    private static final int NUM_DIRECTIONS = DIRECTIONS.length;
+
+    /**
+     * Ray masks.  <code>RAYS[d][p]</code> holds every cell reached from
+     * <code>p</code> by stepping in direction <code>d</code>, excluding
+     * <code>p</code> itself.
+     */
+    private static final long[][] RAYS = new long[NUM_DIRECTIONS][Board.BOARD_LSIZE];
+
+    static {
+        for (int d = 0; d < NUM_DIRECTIONS; d++) {
+            for (int pos = 0; pos < Board.BOARD_LSIZE; pos++) {
+                int x = pos / Board.BOARD_SIZE + DIRECTIONS[d][0];
+                int y = pos % Board.BOARD_SIZE + DIRECTIONS[d][1];
+
+                while (x >= 0 && x < Board.BOARD_SIZE && y >= 0 && y < Board.BOARD_SIZE) {
+                    RAYS[d][pos] |= 1L << Position.makeLinear(x, y);
+                    x += DIRECTIONS[d][0];
+                    y += DIRECTIONS[d][1];
+                }
+            }
+        }
+    }
+
+    private BitBoard() {
+    }
+
+    /**
+     * Determine the pieces flipped by a move.
+     * <p>
+     * In each direction the ray from the move is cut at the first cell
+     * that does not belong to the opponent.  If that cell belongs to the
+     * player, everything before the cut is flipped.
+     * </p>
+     *
+     * @param own   the pieces of the player to move
+     * @param other the pieces of the opponent
+     * @param pos   linear position of the move
+     * @return mask of flipped pieces, empty if the move flips nothing
+     */
+    public static long flips(long own, long other, int pos) {
+        long notOther = ~other;
+        long flips = 0;
+
+        for (int d = 0; d < NUM_DIRECTIONS / 2; d++) {
+            long ray = RAYS[d][pos];
+            long first = Long.lowestOneBit(ray & notOther);
+
+            if ((first & own) != 0) {
+                flips |= ray & (first - 1);
+            }
+        }
+
+        for (int d = NUM_DIRECTIONS / 2; d < NUM_DIRECTIONS; d++) {
+            long ray = RAYS[d][pos];
+            long first = Long.highestOneBit(ray & notOther);
+
+            if ((first & own) != 0) {
+                flips |= ray & -(first << 1);
+            }
+        }
+
+        return flips;
+    }
+
+    /**
+     * Determine the valid moves for a player.
+     * <p>
+     * Uses a parallel prefix (Kogge-Stone) fill in each of the eight
+     * directions: a run of the opponent's pieces anchored by one of the
+     * player's own pieces, followed by an empty cell, is a valid move.
+     * </p>
+     *
+     * @param own   the pieces of the player to move
+     * @param other the pieces of the opponent
+     * @return mask of valid moves
+     */
+    public static long validMoves(long own, long other) {
+        long empty = ~(own | other);
+        long moves = 0;
+
+        long pro = other & NOT_FIRST_COLUMN;
+        moves |= (fillLeft(own, pro, 1) & other) << 1 & NOT_FIRST_COLUMN;
+        moves |= (fillLeft(own, pro, Board.BOARD_SIZE + 1) & other) << (Board.BOARD_SIZE + 1) & NOT_FIRST_COLUMN;
+        moves |= (fillRight(own, pro, Board.BOARD_SIZE - 1) & other) >>> (Board.BOARD_SIZE - 1) & NOT_FIRST_COLUMN;
+
+        pro = other & NOT_LAST_COLUMN;
+        moves |= (fillRight(own, pro, 1) & other) >>> 1 & NOT_LAST_COLUMN;
+        moves |= (fillRight(own, pro, Board.BOARD_SIZE + 1) & other) >>> (Board.BOARD_SIZE + 1) & NOT_LAST_COLUMN;
+        moves |= (fillLeft(own, pro, Board.BOARD_SIZE - 1) & other) << (Board.BOARD_SIZE - 1) & NOT_LAST_COLUMN;
+
+        moves |= (fillLeft(own, other, Board.BOARD_SIZE) & other) << Board.BOARD_SIZE;
+        moves |= (fillRight(own, other, Board.BOARD_SIZE) & other) >>> Board.BOARD_SIZE;
+
+        return moves & empty;
+    }
+
+    /**
+     * Determine the stable pieces of a player, i.e., pieces that can never
+     * be flipped.
+     * <p>
+     * A piece cannot be flipped along a line if the line is full, or if
+     * the piece is next to the edge or to a stable piece of its own color
+     * along the line.  A piece is stable if this holds along all four lines
+     * through it.  The set of stable pieces is grown until it no longer
+     * changes.  Some truly stable pieces may be missed, but every piece
+     * found is stable.
+     * </p>
+     *
+     * @param own   the pieces of the player
+     * @param other the pieces of the opponent
+     * @return mask of the player's stable pieces
+     */
+    public static long stableDiscs(long own, long other) {
+        long empty = ~(own | other);
+
+        // Lines that contain an empty cell are reached by a fill from that cell
+        long fullRows = ~(fillLeft(empty, NOT_FIRST_COLUMN, 1)
+                | fillRight(empty, NOT_LAST_COLUMN, 1));
+        long fullColumns = ~(fillLeft(empty, -1L, Board.BOARD_SIZE)
+                | fillRight(empty, -1L, Board.BOARD_SIZE));
+        long fullDiagonals = ~(fillLeft(empty, NOT_FIRST_COLUMN, Board.BOARD_SIZE + 1)
+                | fillRight(empty, NOT_LAST_COLUMN, Board.BOARD_SIZE + 1));
+        long fullAntiDiagonals = ~(fillLeft(empty, NOT_LAST_COLUMN, Board.BOARD_SIZE - 1)
+                | fillRight(empty, NOT_FIRST_COLUMN, Board.BOARD_SIZE - 1));
+
+        long stable = 0;
+
+        for (; ; ) {
+            long next = own
+                    & (fullRows | SIDE_COLUMNS
+                    | (stable << 1) & NOT_FIRST_COLUMN
+                    | (stable >>> 1) & NOT_LAST_COLUMN)
+                    & (fullColumns | SIDE_ROWS
+                    | (stable << Board.BOARD_SIZE)
+                    | (stable >>> Board.BOARD_SIZE))
+                    & (fullDiagonals | SIDE_COLUMNS | SIDE_ROWS
+                    | (stable << (Board.BOARD_SIZE + 1)) & NOT_FIRST_COLUMN
+                    | (stable >>> (Board.BOARD_SIZE + 1)) & NOT_LAST_COLUMN)
+                    & (fullAntiDiagonals | SIDE_COLUMNS | SIDE_ROWS
+                    | (stable << (Board.BOARD_SIZE - 1)) & NOT_LAST_COLUMN
+                    | (stable >>> (Board.BOARD_SIZE - 1)) & NOT_FIRST_COLUMN);
+
+            if (next == stable) {
+                return stable;
+            }
+            stable = next;
+        }
+    }
+
+    /**
+     * Occluded fill towards higher positions.
+     *
+     * @param gen   generator, i.e., the anchoring pieces
+     * @param pro   propagator, i.e., the cells the fill may pass through
+     * @param shift linear offset of one step
+     * @return the generator extended through the propagator
+     */
+    private static long fillLeft(long gen, long pro, int shift) {
+        gen |= pro & (gen << shift);
+        pro &= pro << shift;
+        gen |= pro & (gen << (2 * shift));
+        pro &= pro << (2 * shift);
+        gen |= pro & (gen << (4 * shift));
+
+        return gen;
+    }
+
+    /**
+     * Occluded fill towards lower positions.
+     *
+     * @param gen   generator, i.e., the anchoring pieces
+     * @param pro   propagator, i.e., the cells the fill may pass through
+     * @param shift linear offset of one step
+     * @return the generator extended through the propagator
+     */
+    private static long fillRight(long gen, long pro, int shift) {
+        gen |= pro & (gen >>> shift);
+        pro &= pro >>> shift;
+        gen |= pro & (gen >>> (2 * shift));
+        pro &= pro >>> (2 * shift);
+        gen |= pro & (gen >>> (4 * shift));
+
+        return gen;
+    }
+}
@@ -24,9 +24,7 @@ import android.util.Log;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.PrimitiveIterator;
 import java.util.Random;
 import java.util.stream.IntStream;
 
@@ -51,28 +49,32 @@ public class Board implements Cloneable, Iterable<Position> {
     public static final int BOARD_LSIZE = BOARD_SIZE * BOARD_SIZE;
 
     /**
-     * The board cells.  A linear array is more convenient
-     * (and efficient) than a grid.
+     * The board cells as bitboards.  Bit <code>n</code> of each mask
+     * corresponds to linear position <code>n</code>.  Copying a position
+     * is a matter of copying a handful of longs.
      */
-    private BoardValue[] board;
+    private long black;
+    private long white;
 
     /**
-     * Linear offset for adjacent cells.
+     * Valid moves for either player.  Derived from the occupied cells.
      */
-    private static int adjacentOffsetTable[] =
-            {
-                    1,
-                    -1,
-                    BOARD_SIZE,
-                    -BOARD_SIZE,
-                    BOARD_SIZE + 1,
-                    BOARD_SIZE - 1,
-                    -BOARD_SIZE + 1,
-                    -BOARD_SIZE - 1
-            };
+    private long validBlack;
+    private long validWhite;
+
+    /**
+     * Cells marked as the best move by the analysis.
+     */
+    private long bestMoves;
+
+    /**
+     * Zobrist hash of the pieces.  Maintained incrementally as pieces
+     * are placed and flipped.
+     */
+    protected long zobrist;
 
     /**
-     * Cardinal directions.  Like the adjacentOffsetTable, except only half.
+     * Cardinal directions.  Only half of the linear offsets, the others are their negation.
      */
     private static int cardinalDirectionTable[] =
             {
@@ -90,14 +92,11 @@ public class Board implements Cloneable, Iterable<Position> {
      */
     public Board() {
         serial = SERIALIZATION_VERSION;
-        board = new BoardValue[BOARD_LSIZE];
 
-        Arrays.fill(board, EMPTY);
-
-        board[Position.makeLinear(3, 3)] = WHITE;
-        board[Position.makeLinear(4, 4)] = WHITE;
-        board[Position.makeLinear(3, 4)] = BLACK;
-        board[Position.makeLinear(4, 3)] = BLACK;
+        setBoardValue(Position.makeLinear(3, 3), WHITE);
+        setBoardValue(Position.makeLinear(4, 4), WHITE);
+        setBoardValue(Position.makeLinear(3, 4), BLACK);
+        setBoardValue(Position.makeLinear(4, 3), BLACK);
 
         updateValidMoves();
     }
@@ -116,13 +115,13 @@ public class Board implements Cloneable, Iterable<Position> {
         for (char c : state.toCharArray()) {
             switch (c) {
                 case '.':
-                    board[lpos] = EMPTY;
+                    setBoardValue(lpos, EMPTY);
                     break;
                 case 'b':
-                    board[lpos] = BLACK;
+                    setBoardValue(lpos, BLACK);
                     break;
                 case 'w':
-                    board[lpos] = WHITE;
+                    setBoardValue(lpos, WHITE);
                     break;
             }
 
@@ -139,15 +138,40 @@ public class Board implements Cloneable, Iterable<Position> {
      * @param other the board to copy
      */
     public Board(Board other) {
-        this.board = Arrays.copyOf(other.board, other.board.length);
+        this.black = other.black;
+        this.white = other.white;
+        this.validBlack = other.validBlack;
+        this.validWhite = other.validWhite;
+        this.bestMoves = other.bestMoves;
+        this.zobrist = other.zobrist;
         this.lastMovePos = other.lastMovePos;
         this.lastMoveValue = other.lastMoveValue;
         this.serial = other.serial;
-        this.numPieces = other.numPieces;
+    }
+
+    /**
+     * Reconstitute a board from its cell representation.
+     *
+     * @param cells  the linear board, as returned by {@link #getLvalue()}
+     * @param lastMovePos   position of the last move
+     * @param lastMoveValue player that made the last move
+     * @param serial        serialization version
+     * @see GameExecutorSerializer
+     */
+    Board(BoardValue[] cells, int lastMovePos, BoardValue lastMoveValue, int serial) {
+        for (int lpos = 0; lpos < BOARD_LSIZE && lpos < cells.length; lpos++) {
+            setBoardValue(lpos, cells[lpos] == null ? EMPTY : cells[lpos]);
+        }
+
+        updateValidMoves();
+
+        this.lastMovePos = lastMovePos;
+        this.lastMoveValue = lastMoveValue;
+        this.serial = serial;
     }
 
     public boolean isConsistent() {
-        return board != null && serial == SERIALIZATION_VERSION;
+        return serial == SERIALIZATION_VERSION;
     }
 
 
@@ -173,7 +197,7 @@ public class Board implements Cloneable, Iterable<Position> {
         try {
             Board other = (Board) obj;
 
-            return Arrays.equals(board, other.board);
+            return black == other.black && white == other.white;
         } catch (Exception e) {
             return false;
         }
@@ -181,13 +205,25 @@ public class Board implements Cloneable, Iterable<Position> {
 
 
     /**
-     * Hashcode.
+     * Hashcode.  Like {@link #equals(Object)}, only considers the pieces.
      *
      * @return hash code
      */
     @Override
     public int hashCode() {
-        return ZobristHash.getInstance().calcHash(this);
+        return (int) (zobrist ^ (zobrist >>> 32));
+    }
+
+
+    /**
+     * 64-bit Zobrist key of the position, including the player to move.
+     * Keys are reproducible across runs.
+     *
+     * @param toMove the player to move
+     * @return the key
+     */
+    public long getHashKey(BoardValue toMove) {
+        return (toMove == WHITE) ? zobrist ^ ZobristHash.WHITE_TO_MOVE : zobrist;
     }
 
 
@@ -211,103 +247,76 @@ public class Board implements Cloneable, Iterable<Position> {
             return false;
         }
 
-        BoardValue cell = getLvalue(position);
-        switch (cell) {
+        return (getValidMoves(player) & (1L << position)) != 0;
+    }
+
+    /**
+     * Determine all valid moves for a player.
+     *
+     * @param player the player to move
+     * @return mask of valid moves, bit <code>n</code> for linear position <code>n</code>
+     */
+    public long getValidMoves(BoardValue player) {
+        switch (player) {
             case BLACK:
+                return validBlack;
             case WHITE:
-            case EMPTY:
-                return false;
-
-            case VALID_BOTH:
-                return true;
-
-            case VALID_BLACK:
-                return player == BoardValue.BLACK;
-
-            case VALID_WHITE:
-                return player == BoardValue.WHITE;
+                return validWhite;
+            default:
+                return 0;
         }
-
-        return false;
     }
 
     /**
-     * Mark valid moves for both players on the board.
-     * Note: Not sure of there is much benefit in marking the opposing player.
-     * Likely only useful for strategy implementations.
+     * Get the pieces of a player.
+     *
+     * @param player the player
+     * @return mask of the player's pieces, bit <code>n</code> for linear position <code>n</code>
      */
-    private void updateValidMoves() {
-        numPieces = 0;
-        for (int lpos = 0; lpos < board.length; lpos++) {
-            BoardValue cell = board[lpos];
-
-            if (cell.isPlayer()) {
-                ++numPieces;
-                continue;
-            }
-
-            cell = BoardValue.EMPTY;
-
-            for (int direction : adjacentOffsetTable) {
-                BoardValue valid = checkRun(direction, lpos);
-                if (valid.isValidMove()) {
-                    if (cell.isEmpty()) {
-                        cell = valid;
-                    } else if (cell != valid) {
-                        cell = BoardValue.VALID_BOTH;
-                        break;
-                    }
-                    // else cell == valid
-                }
-            }
-
-            // reflect any updates
-            board[lpos] = cell;
+    public long getPieces(BoardValue player) {
+        switch (player) {
+            case BLACK:
+                return black;
+            case WHITE:
+                return white;
+            default:
+                return 0;
         }
     }
 
     /**
-     * Determine if there is a run of same-colored pieces starting at
-     * the specified position.
+     * Replace the contents of the board.  Intended for restoring a
+     * previously saved state, so the valid moves are not recomputed.
      *
-     * @param direction direction to check
-     * @param pos       position to evaluate
-     * @return BoardValue.EMPTY when no valid move,
-     * BoardValue.VALID_WHITE when valid for white only,
-     * BoardValue.VALID_BLACK when valid for black only,
-     * BoardValue.VALID_BOTH when valid for either player
-     */
-    private BoardValue checkRun(int direction, int pos) {
-        Assert.isTrue(direction != 0);
-
-        int cur = pos;
-
-        BoardValue target = BoardValue.EMPTY;
-
-        for (; ; ) {
-            cur = Position.add(cur, direction);
-
-            if (!Position.isValid(cur)) {
-                // past the edge of the board
-                return BoardValue.EMPTY;
-            }
-
-            BoardValue curBoardValue = getLvalue(cur);
-
-            // Always expect a run of non-empty cells
-            if (!curBoardValue.isPlayer()) {
-                return BoardValue.EMPTY;
-            }
+     * @param black         pieces of the black player
+     * @param white         pieces of the white player
+     * @param validBlack    valid moves of the black player
+     * @param validWhite    valid moves of the white player
+     * @param zobrist       Zobrist hash of the pieces
+     * @param lastMovePos   position of the last move
+     * @param lastMoveValue player that made the last move
+     */
+    protected void restore(long black, long white, long validBlack, long validWhite, long zobrist,
+                           int lastMovePos, BoardValue lastMoveValue) {
+        this.black = black;
+        this.white = white;
+        this.validBlack = validBlack;
+        this.validWhite = validWhite;
+        this.bestMoves = 0;
+        this.zobrist = zobrist;
+        this.lastMovePos = lastMovePos;
+        this.lastMoveValue = lastMoveValue;
+    }
 
-            if (target == BoardValue.EMPTY) {
-                // first cell after start
-                target = curBoardValue.otherPlayer();
-            } else {
-                if (curBoardValue == target) {
-                    return (target == BoardValue.BLACK) ? BoardValue.VALID_BLACK : BoardValue.VALID_WHITE;
-                }
-            }
-        }
+    /**
+     * Mark valid moves for both players on the board.
+     * Note: Not sure of there is much benefit in marking the opposing player.
+     * Likely only useful for strategy implementations.
+     */
+    private void updateValidMoves() {
+        validBlack = BitBoard.validMoves(black, white);
+        validWhite = BitBoard.validMoves(white, black);
+        bestMoves = 0;
     }
 
 
@@ -356,6 +365,17 @@ public class Board implements Cloneable, Iterable<Position> {
         return Math.max(score, 0);
     }
 
+    /**
+     * Determines the pieces of a player that can never be flipped.  Every
+     * such piece has a {@link #countProtected(int)} of 4.
+     *
+     * @param player the player
+     * @return mask of stable pieces
+     */
+    public long getStableDiscs(BoardValue player) {
+        return BitBoard.stableDiscs(getPieces(player), getPieces(player.otherPlayer()));
+    }
+
     /**
      * Does the specified player have a valid move?
      *
@@ -365,13 +385,7 @@ public class Board implements Cloneable, Iterable<Position> {
     public boolean hasValidMove(BoardValue player) {
         Assert.isTrue(player.isPlayer());
 
-        for (Position pos : this) {
-            if (isValidMove(new Move(player, pos))) {
-                return true;
-            }
-        }
-
-        return false;
+        return getValidMoves(player) != 0;
     }
 
 
@@ -392,37 +406,29 @@ public class Board implements Cloneable, Iterable<Position> {
 
         Assert.isTrue(isValidMove(thisPlayer, pos), "Invalid move");
 
-        setBoardValue(pos, thisPlayer);
-        lastMovePos = pos;
-        lastMoveValue = thisPlayer;
-
-        for (int direction : adjacentOffsetTable) {
-            if (isFlippable(direction, thisPlayer, pos)) {
-                int cur = pos;
-
-                boolean done = false;
+        long bit = 1L << pos;
 
-                while (!done) {
-                    cur = Position.add(cur, direction);
+        long flips;
 
-                    Assert.isTrue(Position.isValid(cur));
-
-                    BoardValue curBoardValue = getLvalue(cur);
-
-                    if (curBoardValue == thisPlayer) {
-                        // finish when reaching own piece
-                        done = true;
-                    } else {
-                        // Internal consistency check.  We are flipping
-                        // existing pieces not occupying empty cells.
-                        Assert.isTrue(curBoardValue.isPlayer(), "Position not occupied");
+        if (thisPlayer == BLACK) {
+            flips = BitBoard.flips(black, white, pos);
+            black |= flips | bit;
+            white &= ~flips;
+            zobrist ^= ZobristHash.BLACK_KEYS[pos];
+        } else {
+            flips = BitBoard.flips(white, black, pos);
+            white |= flips | bit;
+            black &= ~flips;
+            zobrist ^= ZobristHash.WHITE_KEYS[pos];
+        }
 
-                        setBoardValue(cur, thisPlayer);
-                    }
-                }
-            }
+        for (; flips != 0; flips &= flips - 1) {
+            zobrist ^= ZobristHash.FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
         }
 
+        lastMovePos = pos;
+        lastMoveValue = thisPlayer;
+
         updateValidMoves();
     }
 
@@ -447,17 +453,12 @@ public class Board implements Cloneable, Iterable<Position> {
     public String toString() {
         StringBuilder buf = new StringBuilder();
 
-        if (board != null) {
-            int i = 0;
-            for (BoardValue cell : board) {
-                buf.append(cell.toString(true));
+        for (int lpos = 0; lpos < BOARD_LSIZE; lpos++) {
+            buf.append(getLvalue(lpos).toString(true));
 
-                if ((++i % BOARD_SIZE) == 0) {
-                    buf.append('\n');
-                }
+            if (((lpos + 1) % BOARD_SIZE) == 0) {
+                buf.append('\n');
             }
-        } else {
-            buf.append("no board");
         }
 
         return buf.toString();
@@ -506,17 +507,23 @@ public class Board implements Cloneable, Iterable<Position> {
      * @return the cell
      */
     public BoardValue getValue(Position pos) {
-        return board[pos.getLinear()];
+        return getLvalue(pos.getLinear());
     }
 
 
     /**
      * Accessor for a cell on the board
      *
-     * @return the linear board
+     * @return a copy of the linear board
      */
     public BoardValue[] getLvalue() {
-        return board;
+        BoardValue[] cells = new BoardValue[BOARD_LSIZE];
+
+        for (int lpos = 0; lpos < BOARD_LSIZE; lpos++) {
+            cells[lpos] = getLvalue(lpos);
+        }
+
+        return cells;
     }
 
 
@@ -527,10 +534,21 @@ public class Board implements Cloneable, Iterable<Position> {
      * @return the cell
      */
     public BoardValue getLvalue(int linear) {
-        // Log.d( TAG, "getLvalue: [" + linear + "] = " +
-        //     ((board[linear] == null) ? "null" : board[linear].toString() ) );
+        long bit = 1L << linear;
+
+        if ((black & bit) != 0) {
+            return BLACK;
+        } else if ((white & bit) != 0) {
+            return WHITE;
+        } else if ((bestMoves & bit) != 0) {
+            return BEST_MOVE;
+        } else if ((validBlack & bit) != 0) {
+            return ((validWhite & bit) != 0) ? VALID_BOTH : VALID_BLACK;
+        } else if ((validWhite & bit) != 0) {
+            return VALID_WHITE;
+        }
 
-        return board[linear];
+        return EMPTY;
     }
 
 
@@ -542,7 +560,7 @@ public class Board implements Cloneable, Iterable<Position> {
      * @return the cell
      */
     public BoardValue getValue(int x, int y) {
-        return board[new Position(x, y).getLinear()];
+        return getLvalue(Position.makeLinear(x, y));
     }
 
 
@@ -553,7 +571,46 @@ public class Board implements Cloneable, Iterable<Position> {
      * @param c value to set the cell to
      */
     protected void setBoardValue(int p, BoardValue c) {
-        board[p] = c;
+        long bit = 1L << p;
+        long keep = ~bit;
+
+        if ((black & bit) != 0) {
+            zobrist ^= ZobristHash.BLACK_KEYS[p];
+        } else if ((white & bit) != 0) {
+            zobrist ^= ZobristHash.WHITE_KEYS[p];
+        }
+
+        black &= keep;
+        white &= keep;
+        validBlack &= keep;
+        validWhite &= keep;
+        bestMoves &= keep;
+
+        switch (c) {
+            case BLACK:
+                black |= bit;
+                zobrist ^= ZobristHash.BLACK_KEYS[p];
+                break;
+            case WHITE:
+                white |= bit;
+                zobrist ^= ZobristHash.WHITE_KEYS[p];
+                break;
+            case VALID_BLACK:
+                validBlack |= bit;
+                break;
+            case VALID_WHITE:
+                validWhite |= bit;
+                break;
+            case VALID_BOTH:
+                validBlack |= bit;
+                validWhite |= bit;
+                break;
+            case BEST_MOVE:
+                bestMoves |= bit;
+                break;
+            case EMPTY:
+                break;
+        }
     }
 
     /**
@@ -563,7 +620,7 @@ public class Board implements Cloneable, Iterable<Position> {
      * @param c value to set the cell to
      */
     protected void setBoardValue(Position p, BoardValue c) {
-        board[p.getLinear()] = c;
+        setBoardValue(p.getLinear(), c);
     }
 
 
@@ -573,9 +630,7 @@ public class Board implements Cloneable, Iterable<Position> {
      * @param m position and value of cell to set
      */
     protected void setBoardValue(Move m) {
-        Position p = m.getPosition();
-
-        board[p.getLinear()] = m.getValue();
+        setBoardValue(m.getPosition().getLinear(), m.getValue());
     }
 
 
@@ -586,10 +641,17 @@ public class Board implements Cloneable, Iterable<Position> {
      * @return the number of pieces
      */
     public int countBoardValues(BoardValue player) {
+        switch (player) {
+            case BLACK:
+                return Long.bitCount(black);
+            case WHITE:
+                return Long.bitCount(white);
+        }
+
         int count = 0;
 
-        for (BoardValue cell : board) {
-            if (cell == player) {
+        for (int lpos = 0; lpos < BOARD_LSIZE; lpos++) {
+            if (getLvalue(lpos) == player) {
                 count++;
             }
         }
@@ -638,42 +700,6 @@ public class Board implements Cloneable, Iterable<Position> {
     }
 
 
-    /**
-     * Determine if there are any flippable pieces for the Move
-     * in the specified direction
-     */
-    private boolean isFlippable(int direction, BoardValue thisPlayer, int pos) {
-        Assert.isTrue(direction != 0);
-
-        int cur = pos;
-        int otherPieces = 0;
-
-        for (; ; ) {
-            cur = Position.add(cur, direction);
-
-            if (!Position.isValid(cur)) {
-                // past the edge of the board
-                return false;
-            }
-
-            BoardValue curBoardValue = getLvalue(cur);
-
-            if (curBoardValue == thisPlayer) {
-                if (otherPieces > 0) {
-                    // need run of other players pieces followed by own player
-                    return true;
-                } else {
-                    return false;
-                }
-            } else if (!curBoardValue.isPlayer())     // aka "empty" but allows for "valid move" states
-            {
-                return false;
-            }
-
-            ++otherPieces;
-        }
-    }
-
     /**
      * Checks that all pieces are of the same color from the specified position and direction.
      *
@@ -706,15 +732,13 @@ public class Board implements Cloneable, Iterable<Position> {
         return new Move(lastMoveValue, new Position(lastMovePos));
     }
 
-    private int lastMovePos;
-    private BoardValue lastMoveValue;
+    protected int lastMovePos;
+    protected BoardValue lastMoveValue;
 
     public int getNumPieces() {
-        return numPieces;
+        return Long.bitCount(black | white);
     }
 
-    private int numPieces = 0;
-
     /**
      * Iterator across the entire board
      */
@@ -739,53 +763,34 @@ public class Board implements Cloneable, Iterable<Position> {
 
     }
 
+    /**
+     * Random keys for Zobrist hashing.  The generator is seeded so that
+     * keys are identical from run to run.
+     */
     private static class ZobristHash {
 
-        final static int NUM_COLORS = 2;
-        private static ZobristHash instance;
-
-        int[][] table;
-
-        public static ZobristHash getInstance() {
-
-            if (instance == null) {
-                synchronized (ZobristHash.class) {
-                    if (instance == null) {
-                        instance = new ZobristHash();
-                    }
-                }
-            }
-
-            return instance;
-        }
+        final static long SEED = 0x4f7468656c6c6fL;
 
-        private ZobristHash() {
+        final static long[] BLACK_KEYS = new long[Board.BOARD_LSIZE];
+        final static long[] WHITE_KEYS = new long[Board.BOARD_LSIZE];
 
-            table = new int[Board.BOARD_LSIZE][NUM_COLORS];
+        /**
+         * Keys for a piece changing color, i.e., <code>BLACK_KEYS ^ WHITE_KEYS</code>
+         */
+        final static long[] FLIP_KEYS = new long[Board.BOARD_LSIZE];
 
-            PrimitiveIterator.OfInt r = new Random().ints().iterator();
+        final static long WHITE_TO_MOVE;
 
-            for (int pos = 0; pos < Board.BOARD_LSIZE; ++pos) {
-                for (int color = 0; color < NUM_COLORS; ++color) {
-                    table[pos][color] = r.nextInt();
-                }
-            }
-        }
+        static {
+            Random r = new Random(SEED);
 
-        int calcHash(Board board) {
-            int hash = 0;
             for (int pos = 0; pos < Board.BOARD_LSIZE; ++pos) {
-
-                if (board.board[pos] == WHITE) {
-                    hash = hash ^ table[pos][0];
-                }
-                else if (board.board[pos] == BLACK) {
-                    hash = hash ^ table[pos][1];
-                }
-
+                BLACK_KEYS[pos] = r.nextLong();
+                WHITE_KEYS[pos] = r.nextLong();
+                FLIP_KEYS[pos] = BLACK_KEYS[pos] ^ WHITE_KEYS[pos];
             }
 
-            return hash;
+            WHITE_TO_MOVE = r.nextLong();
         }
     }
 
@@ -21,17 +21,12 @@ package ca.provenpath.othello.game;
 
 
 import android.content.SharedPreferences;
-import android.support.annotation.NonNull;
 import android.util.Log;
 import ca.provenpath.othello.PlayerSettingsFragment;
-import ca.provenpath.othello.game.observer.AnalysisBoardNotification;
 import ca.provenpath.othello.game.observer.AnalysisNotification;
 import ca.provenpath.othello.game.observer.AnalysisValueNotification;
-import ca.provenpath.othello.game.observer.EngineNotification;
 import ca.provenpath.othello.game.observer.GameNotification;
 import ca.provenpath.othello.game.observer.MoveNotification;
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import reactor.core.publisher.Flux;
@@ -39,10 +34,6 @@ import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.PriorityQueue;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 
 import static java.time.temporal.ChronoUnit.MILLIS;
@@ -60,15 +51,40 @@ import static java.time.temporal.ChronoUnit.SECONDS;
 public class ComputerPlayer extends Player {
     public final static String TAG = ComputerPlayer.class.getSimpleName();
 
+    /**
+     * Number of search threads when none is configured.  Keep in step with
+     * pref_threads_default.
+     */
+    public final static int DEFAULT_THREADS = 2;
+
     int maxDepth = 4;
     Strategy strategy = new AdaptiveStrategy();
     boolean showOverlay = false;
     Duration minTurnTime = Duration.ZERO;
     Duration maxTurnTime = Duration.ofMillis(3000);
     Duration delayInitialNotification = Duration.of(1, SECONDS);
-    transient MiniMaxResult previousBestResult = null;
-    transient TranspositionTable transpositionTable;
-    static transient Timer timer = new Timer("PlayerTimer");
+    int transpositionTableSizeLog2 = TranspositionTable.DEFAULT_SIZE_LOG2;
+    int[] aspirationWindows = {100, 400, 1600};
+    int endgameEmpties = 14;
+    int winLossDrawEmpties = 18;
+    int threads = DEFAULT_THREADS;
+    boolean lazySmp = false;
+    boolean splitInterior = false;
+    boolean probCut = false;
+    int ponderShare = 0;
+    int multiPv = 1;
+
+    /**
+     * Limit the search to this many boards instead of the maximum turn
+     * time, for reproducible searches.  0 for no limit.
+     */
+    long nodeBudget = 0;
+
+    /**
+     * Seeds the choice between equally good moves when searching with a
+     * node budget.
+     */
+    long randomSeed = 0;
 
 
     public ComputerPlayer(BoardValue color) {
@@ -93,6 +109,20 @@ public class ComputerPlayer extends Player {
                 MILLIS));
 
         setShowOverlay(prefs.getBoolean(PlayerSettingsFragment.KEY_ISOVERLAY_ANALYSIS, false));
+
+        setEndgameEmpties(
+                Integer.parseInt(prefs.getString(PlayerSettingsFragment.KEY_ENDGAME_EMPTIES, "14")));
+        setWinLossDrawEmpties(
+                Integer.parseInt(prefs.getString(PlayerSettingsFragment.KEY_WLD_EMPTIES, "18")));
+        setThreads(
+                Integer.parseInt(prefs.getString(PlayerSettingsFragment.KEY_THREADS, String.valueOf(DEFAULT_THREADS))));
+        setLazySmp(prefs.getBoolean(PlayerSettingsFragment.KEY_LAZY_SMP, false));
+        setSplitInterior(prefs.getBoolean(PlayerSettingsFragment.KEY_SPLIT_INTERIOR, false));
+        setProbCut(prefs.getBoolean(PlayerSettingsFragment.KEY_PROBCUT, false));
+        setPonderShare(
+                Integer.parseInt(prefs.getString(PlayerSettingsFragment.KEY_PONDER, "0")));
+        setMultiPv(
+                Integer.parseInt(prefs.getString(PlayerSettingsFragment.KEY_MULTI_PV, "1")));
     }
 
     public ComputerPlayer(String serial) {
@@ -103,6 +133,27 @@ public class ComputerPlayer extends Player {
         return true;
     }
 
+    /**
+     * Search on the opponent's time.  Does nothing unless the player has a
+     * share of the CPU for pondering.  As pondering depends on the time the
+     * opponent takes, there is no pondering with a node budget.  Pondering is
+     * stopped by {@link #interruptMove()}.
+     *
+     * @param board the board the opponent is to move on
+     */
+    public void ponder(Board board) {
+        if (ponderShare > 0 && nodeBudget == 0) {
+            Log.i(TAG, color + " ponder");
+            SearchEngine.forColor(color).startPondering(this, board);
+        }
+    }
+
+    @Override
+    public void interruptMove() {
+        super.interruptMove();
+        SearchEngine.forColor(color).stopPondering(this);
+    }
+
     /**
      * Make a move on the board.
      *
@@ -126,33 +177,54 @@ public class ComputerPlayer extends Player {
 
                     Instant startProcessing = Instant.now();
 
-                    TimerTask timerTask = new TimerTask() {
-                        @Override
-                        public void run() {
-                            isInterrupted = true;
-                        }
-                    };
-
-                    timer.schedule(timerTask, getMaxTurnTime().toMillis());
+                    // A node budget replaces the clock
+                    TimeManager timeManager = nodeBudget == 0 ? new TimeManager(getMaxTurnTime()) : null;
+                    if (timeManager != null) {
+                        timeManager.start(this);
+                    }
 
-                    Stats stats = new Stats();
-                    MiniMaxResult result = minimaxAB(board, color, maxDepth, stats,
+                    SearchEngine engine = SearchEngine.forColor(color);
+                    SearchEngine.MiniMaxResult result = engine.search(this, board, timeManager,
                             notification -> {
                                 //Log.d(TAG, "to sink: " + notification);
                                 sink.next(notification);
                             });
 
-                    timerTask.cancel();
-
                     Assert.notNull(result.getPosition());
 
                     Log.i(TAG, "makeMove: " + result.getPosition() + ", value: " + result.getValue());
+                    SearchEngine.Stats stats = engine.getStats();
                     long duration = stats.duration();
+                    if (timeManager != null) {
+                        timeManager.stop();
+                        Log.i(TAG, String.format("Depth %d completed, %d ms spent on unfinished iterations",
+                                timeManager.getCompletedDepth(),
+                                timeManager.getWastedTime().toMillis()));
+                    } else {
+                        Log.i(TAG, String.format("%d boards of a budget of %d", stats.getBoardsEvaluated(), nodeBudget));
+                    }
                     Log.i(TAG, String.format("%d boards evaluated in %d ms. %d boards/sec",
                             stats.getBoardsEvaluated(),
                             duration,
                             duration > 0 ? (int) ((double) stats.getBoardsEvaluated() * 1000.0 / (double) duration) : 999999));
-                    Log.i(TAG, String.format("%d cache hits", stats.getCacheHits()));
+                    Log.i(TAG, String.format("%d cache hits, %d probes, %.1f%% hit rate",
+                            stats.getCacheHits(),
+                            stats.getCacheProbes(),
+                            stats.getCacheHitRate() * 100.0));
+                    Log.i(TAG, String.format("%d cutoffs, %.1f%% by the first move",
+                            stats.getCutoffs(),
+                            stats.getFirstMoveCutoffRate() * 100.0));
+                    Log.i(TAG, String.format("%d aspiration searches, %d failed low, %d failed high",
+                            stats.getAspirationSearches(),
+                            stats.getAspirationFailLow(),
+                            stats.getAspirationFailHigh()));
+                    Log.i(TAG, String.format("%d ProbCut prunes", stats.getProbCuts()));
+                    Log.i(TAG, String.format("%d enhanced transposition cutoffs", stats.getEtcCutoffs()));
+                    Log.i(TAG, String.format("%d endgame stability cutoffs", stats.getStabilityCutoffs()));
+                    Log.i(TAG, String.format("%d split points, %d cut off, %d siblings searched",
+                            stats.getSplits(),
+                            stats.getSplitCutoffs(),
+                            stats.getSiblingsSearched()));
 
                     sink.next(new MoveNotification(new Move(color, result.getPosition()), startProcessing));
                     sink.complete();
@@ -181,370 +253,4 @@ public class ComputerPlayer extends Player {
                     return Flux.just((GameNotification) notification);
                 });
     }
-
-
-    /**
-     * Recursively build game tree.  Find the move that leads to the
-     * strongest board for the player.  Utilize alpha-beta pruning
-     * to narrow search.
-     * <p>
-     * This is specialized implementation for the first ply.
-     *
-     * @param board  the board to evaluate
-     * @param player the player who's move it is
-     * @param depth  the current recursion depth (in half-moves)
-     * @param stats  performance statistics
-     * @return the value of board
-     */
-    private MiniMaxResult minimaxAB(
-            Board board,
-            BoardValue player,
-            int depth,
-            Stats stats,
-            Consumer<GameNotification> notificationSinkFn) {
-        final PriorityQueue<MiniMaxResult> candidates = new PriorityQueue<>();
-        final PriorityQueue<MiniMaxResult> results = new PriorityQueue<>();
-
-        for (Position pos : board) {
-            Move m = new Move(player, pos);
-
-            if (board.isValidMove(m)) {
-                candidates.add(new MiniMaxResult(0, pos));
-            }
-        }
-
-        notificationSinkFn.accept(
-                new EngineNotification(stats.boardsEvaluated, stats.duration(), 0));
-
-        /*
-         * Build game tree of increasing depths.  Use results of one iteration to
-         * hint better candidates to the subsequent iteration.  alpha-beta pruning
-         * benefits greatly from discovering the best solution early.
-         */
-
-        for (int curDepth = 1; curDepth <= depth && !isInterrupted; curDepth++) {
-            try {
-                // Always the maximizing player
-                int alpha = Integer.MIN_VALUE;
-                int beta = Integer.MAX_VALUE;
-
-                results.clear();
-                transpositionTable = new TranspositionTable();
-
-                for (MiniMaxResult candidate : candidates) {
-                    Board copyOfBoard = (Board) board.clone();
-                    copyOfBoard.makeMove(player, candidate.getPosition().getLinear());
-
-                    MiniMaxResult result = new MiniMaxResult(
-                            (candidates.size() == 1)
-                                    ? 0  // Optimization.  There is only one move.
-                                    : minimaxAB(copyOfBoard, player.otherPlayer(), curDepth - 1, alpha, beta, stats),
-                            candidate.getPosition());
-
-                    results.add(result);
-
-                    sendAnalysis(notificationSinkFn, result, results.peek());
-
-                    notificationSinkFn.accept(
-                            new EngineNotification(stats.boardsEvaluated, stats.duration(), curDepth));
-
-                    alpha = Math.max(result.getValue(), alpha);
-                }
-
-                sendBestMove(notificationSinkFn, board, results.peek());
-
-                Log.i(TAG, String.format("Predicted best move: %s, found %s at depth %d",
-                        candidates.peek(), results.peek(), curDepth));
-                Log.i(TAG, String.format("Predicted best move at position %d of %d",
-                        new Callable<Integer>() {
-                            @Override
-                            public Integer call() {
-                                int ordinal = 1;
-                                Position target = candidates.peek().getPosition();
-                                for (MiniMaxResult res : results) {
-                                    if (res.getPosition().equals(target)) {
-                                        return ordinal;
-                                    }
-                                    ++ordinal;
-                                }
-
-                                return -1;
-                            }
-                        }.call(),
-                        results.size()));
-
-                if (results.size() <= 1)
-                    break;
-
-                candidates.clear();
-                candidates.addAll(results);
-            } catch (InterruptedException e) {
-                Log.w(TAG, e.getMessage());
-                return bestResultOf(candidates);
-            }
-        }
-
-        // We should be assured at least one valid move
-        Assert.isTrue(!results.isEmpty());
-
-        return bestResultOf(results);
-    }
-
-    private void sendBestMove(Consumer<GameNotification> notificationSinkFn, Board board, MiniMaxResult best) {
-
-        Board newBoard = (Board) board.clone();
-        newBoard.setBoardValue(best.getPosition(), BoardValue.BEST_MOVE);
-
-        notificationSinkFn.accept(
-                new AnalysisBoardNotification(best.getValue(), best.getPosition(), true, newBoard));
-    }
-
-    private void sendAnalysis(
-            Consumer<GameNotification> notificationSinkFn,
-            MiniMaxResult lastResult,
-            MiniMaxResult bestResult) {
-
-        if (previousBestResult != null && previousBestResult.getPosition() != bestResult.getPosition()) {
-            notificationSinkFn.accept(
-                    new AnalysisValueNotification(previousBestResult.getValue(), previousBestResult.getPosition(), false));
-        }
-
-        if (bestResult.getPosition() != lastResult.getPosition()) {
-            notificationSinkFn.accept(
-                    new AnalysisValueNotification(lastResult.getValue(), lastResult.getPosition(), false));
-        }
-
-        notificationSinkFn.accept(
-                new AnalysisValueNotification(bestResult.getValue(), bestResult.getPosition(), true));
-        previousBestResult = bestResult;
-
-    }
-
-    /**
-     * Applies a little entropy to homogeneous results.
-     *
-     * @param results candidate results sorted in value order
-     * @return "best" result
-     */
-    private MiniMaxResult bestResultOf(Iterable<MiniMaxResult> results) {
-        MiniMaxResult best = null;
-
-        for (MiniMaxResult result : results) {
-            if (best == null) {
-                best = result;
-            } else if (best.value == result.value) {
-                // Decide randomly which one to take
-                // FIXME better distribution for N > 2 results
-                if (Math.random() < 0.5) {
-                    Log.i(TAG, "Updated result to " + result);
-                    best = result;
-                }
-            } else {
-                break;
-            }
-        }
-
-        return best;
-    }
-
-    /**
-     * Recursively build game tree.  Find the move that leads to the
-     * strongest board for the player.  Utilize alpha-beta pruning
-     * to narrow search.
-     *
-     * @param board  the board to evaluate
-     * @param player the player who's move it is
-     * @param depth  the current recursion depth (in half-moves)
-     * @param alpha  the alpha maximum
-     * @param beta   the beta maximum
-     * @param stats  performance statistics
-     * @return the value of board
-     */
-    private int minimaxAB(
-            Board board,
-            BoardValue player,
-            int depth,
-            int alpha,
-            int beta,
-            Stats stats) throws InterruptedException {
-        int origAlpha = alpha;
-        int origBeta = beta;
-
-        if (isInterrupted) {
-            throw new InterruptedException("out of time");
-        }
-
-        TranspositionTable.Entry ttEntry = transpositionTable.get(board);
-        if (ttEntry != null) {
-            switch (ttEntry.getFlag()) {
-                case EXACT:
-                    stats.incCacheHit();
-                    return ttEntry.getValue();
-                case LOWERBOUND:
-                    alpha = Math.max(alpha, ttEntry.getValue());
-                    break;
-                case UPPERBOUND:
-                    beta = Math.min(beta, ttEntry.getValue());
-                    break;
-            }
-            if (beta <= alpha) {
-                //Log.d(TAG, "Cache prune");
-                stats.incCacheHit();
-                return ttEntry.getValue();
-            }
-        }
-
-        if (depth <= 0) {
-            stats.incBoard();
-            return strategy.determineBoardValue(color, board);
-        }
-
-        boolean validMoveSeen = false;
-        int value;
-
-        if (player == color) {
-            value = Integer.MIN_VALUE;
-
-            for (int pos = 0; Position.isValid(pos); pos++) {
-                if (board.isValidMove(player, pos)) {
-                    validMoveSeen = true;
-
-                    Board copyOfBoard = (Board) board.clone();
-                    copyOfBoard.makeMove(player, pos);
-
-                    value = minimaxAB(copyOfBoard, player.otherPlayer(), depth - 1, alpha, beta, stats);
-                    alpha = Math.max(value, alpha);
-                    if (beta <= alpha)
-                        break;
-                }
-
-                if (isInterrupted)
-                    break;
-            }
-        } else {
-            value = Integer.MAX_VALUE;
-
-            for (int pos = 0; Position.isValid(pos); pos++) {
-                if (board.isValidMove(player, pos)) {
-                    validMoveSeen = true;
-
-                    Board copyOfBoard = (Board) board.clone();
-                    copyOfBoard.makeMove(player, pos);
-
-                    value = minimaxAB(copyOfBoard, player.otherPlayer(), depth - 1, alpha, beta, stats);
-                    beta = Math.min(value, beta);
-                    if (beta <= alpha)
-                        break;
-                }
-
-                if (isInterrupted)
-                    break;
-            }
-        }
-
-        if (!validMoveSeen) {
-            // player has to pass ...
-
-            if (board.hasValidMove(player.otherPlayer())) {
-                value = minimaxAB(board, player.otherPlayer(), depth, alpha, beta, stats);
-            } else {
-                // neither player has a valid move.  return the score
-                value = strategy.determineFinalScore(color, board);
-            }
-        }
-
-        TranspositionTable.Flag flag;
-        if (value <= origAlpha) {
-            flag = TranspositionTable.Flag.UPPERBOUND;
-        } else if (value >= origBeta) {
-            flag = TranspositionTable.Flag.LOWERBOUND;
-        } else {
-            flag = TranspositionTable.Flag.EXACT;
-        }
-        transpositionTable.put(new TranspositionTable.Entry(value, depth, flag, board));
-
-        return value;
-    }
-
-
-    @AllArgsConstructor
-    @Data
-    private class MiniMaxResult implements Comparable<MiniMaxResult> {
-
-        private int value;
-        private Position position;
-
-        /**
-         * Compares this object to the specified object to determine their relative
-         * order.
-         * <p>
-         * Natural sort order is highest value results first.
-         *
-         * @param another the object to compare to this instance.
-         * @return a negative integer if this instance is less than {@code another};
-         * a positive integer if this instance is greater than
-         * {@code another}; 0 if this instance has the same order as
-         * {@code another}.
-         * @throws ClassCastException if {@code another} cannot be converted into something
-         *                            comparable to {@code this} instance.
-         */
-        @Override
-        public int compareTo(@NonNull MiniMaxResult another) {
-            return Integer.compare(another.value, this.value);
-        }
-    }
-
-    /**
-     * Helper for performance statistics.  Thread-safe.
-     private class Stats
-     {
-     private long start = System.currentTimeMillis();
-     private AtomicInteger boardsEvaluated = new AtomicInteger( 0 );
-
-     public void incBoard()
-     {
-     boardsEvaluated.getAndIncrement();
-     }
-
-     public int getBoardsEvaluated()
-     {
-     return boardsEvaluated.get();
-     }
-
-     public long duration()
-     {
-     return System.currentTimeMillis() - start;
-     }
-     }
-     */
-
-
-    /**
-     * Helper for performance statistics.  Not thread-safe.
-     */
-    private class Stats {
-        private long start = System.currentTimeMillis();
-        private int boardsEvaluated = 0;
-        private int cacheHits = 0;
-
-        public void incBoard() {
-            boardsEvaluated++;
-        }
-
-        public void incCacheHit() {
-            cacheHits++;
-        }
-
-        public int getBoardsEvaluated() {
-            return boardsEvaluated;
-        }
-
-        public int getCacheHits() {
-            return cacheHits;
-        }
-
-        public long duration() {
-            return System.currentTimeMillis() - start;
-        }
-    }
 }
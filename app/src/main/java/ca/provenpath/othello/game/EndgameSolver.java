@@ -0,0 +1,374 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Solves endgames exactly.  Instead of a heuristic value, the solver
+ * determines the final disc differential under perfect play.
+ * <p>
+ * The solver works on raw bitboards.  It does not consult a strategy
+ * and does not update the derived state of a {@link Board}.  Moves are
+ * ordered by:
+ * <ul>
+ * <li>mobility.  Moves that leave the opponent few replies come first.
+ * This is only worth its cost with enough empties left.</li>
+ * <li>parity.  Moves into quadrants with an odd number of empties come first,
+ * so that the player to move is likely to get the last move in the quadrant.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Stable discs bound the final differential.  The opponent keeps its stable
+ * discs, so the player can do no better than the remaining squares.  If
+ * that bound is no better than alpha, the position is pruned.  Likewise if
+ * the player's own stable discs guarantee at least beta.
+ * </p>
+ * <p>
+ * Positions with many empties are cached in a transposition table.  Final
+ * differentials do not depend on a strategy, so the table can be kept for
+ * the lifetime of the solver.
+ * </p>
+ * <p>
+ * Not thread-safe.  Each search thread requires its own instance.
+ * </p>
+ *
+ * @author npapke
+ */
+public class EndgameSolver {
+    public final static String TAG = EndgameSolver.class.getSimpleName();
+
+    /**
+     * Differentials lie within [-MAX_DIFFERENTIAL, MAX_DIFFERENTIAL].
+     */
+    public static final int MAX_DIFFERENTIAL = Board.BOARD_LSIZE;
+
+    /**
+     * Below this many empties moves are only ordered by parity.
+     */
+    private static final int MOBILITY_ORDER_EMPTIES = 7;
+
+    /**
+     * Positions with at least this many empties are cached.
+     */
+    private static final int TABLE_EMPTIES = 9;
+
+    /**
+     * Positions with at least this many empties are checked for stability cutoffs.
+     */
+    private static final int STABILITY_EMPTIES = 4;
+
+    /**
+     * Capacity of the transposition table, as a power of two.
+     */
+    private static final int TABLE_SIZE_LOG2 = 16;
+
+    /**
+     * Check for interruptions every this many nodes (minus one).
+     */
+    private static final int INTERRUPT_CHECK_MASK = 0xfff;
+
+    private static final long[] QUADRANTS = {
+            0x000000000f0f0f0fL,
+            0x00000000f0f0f0f0L,
+            0x0f0f0f0f00000000L,
+            0xf0f0f0f000000000L
+    };
+
+    private final BooleanSupplier interrupted;
+    private final TranspositionTable transpositionTable = new TranspositionTable(TABLE_SIZE_LOG2);
+    private final int[][] moveLists = new int[Board.BOARD_LSIZE + 1][Board.BOARD_LSIZE];
+    private final int[][] moveScores = new int[Board.BOARD_LSIZE + 1][Board.BOARD_LSIZE];
+    private long nodes = 0;
+    private long stabilityCutoffs = 0;
+
+    /**
+     * Construct a solver.
+     *
+     * @param interrupted polled during the solve.  The solve is abandoned once it returns true.
+     */
+    public EndgameSolver(BooleanSupplier interrupted) {
+        this.interrupted = interrupted;
+    }
+
+    /**
+     * Forget the positions solved earlier, e.g., to make a solve reproducible.
+     */
+    public void clear() {
+        transpositionTable.clear();
+    }
+
+    /**
+     * Get the number of positions visited since construction.
+     *
+     * @return number of positions
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of positions pruned by stable discs since construction.
+     *
+     * @return number of positions
+     */
+    public long getStabilityCutoffs() {
+        return stabilityCutoffs;
+    }
+
+    /**
+     * Determine the final disc differential.
+     *
+     * @param board  the board to solve
+     * @param player the player to move
+     * @return the final number of the player's discs less the opponent's,
+     * with empty squares going to the winner
+     * @throws InterruptedException if the solve was interrupted
+     */
+    public int solve(Board board, BoardValue player) throws InterruptedException {
+        return solve(board, player, -MAX_DIFFERENTIAL, MAX_DIFFERENTIAL);
+    }
+
+    /**
+     * Determine the final disc differential within a window.  The result is
+     * exact if it lies within the window, a bound otherwise.
+     *
+     * @param board  the board to solve
+     * @param player the player to move
+     * @param alpha  the lower bound of the window
+     * @param beta   the upper bound of the window
+     * @return the differential from the perspective of the player to move
+     * @throws InterruptedException if the solve was interrupted
+     */
+    public int solve(Board board, BoardValue player, int alpha, int beta) throws InterruptedException {
+        return solve(
+                board.getPieces(player),
+                board.getPieces(player.otherPlayer()),
+                alpha,
+                beta,
+                false);
+    }
+
+    private int solve(long own, long other, int alpha, int beta, boolean passed) throws InterruptedException {
+
+        if ((++nodes & INTERRUPT_CHECK_MASK) == 0 && interrupted.getAsBoolean()) {
+            throw new InterruptedException("out of time");
+        }
+
+        long empty = ~(own | other);
+        int empties = Long.bitCount(empty);
+
+        if (empties == 1) {
+            return solveLastMove(own, other, Long.numberOfTrailingZeros(empty));
+        }
+
+        if (empties >= STABILITY_EMPTIES) {
+            // Only worth computing if the opponent has enough discs to keep
+            if (MAX_DIFFERENTIAL - 2 * Long.bitCount(other) <= alpha) {
+                int upper = MAX_DIFFERENTIAL - 2 * Long.bitCount(BitBoard.stableDiscs(other, own));
+
+                if (upper <= alpha) {
+                    stabilityCutoffs++;
+                    return upper;
+                }
+            }
+
+            if (2 * Long.bitCount(own) - MAX_DIFFERENTIAL >= beta) {
+                int lower = 2 * Long.bitCount(BitBoard.stableDiscs(own, other)) - MAX_DIFFERENTIAL;
+
+                if (lower >= beta) {
+                    stabilityCutoffs++;
+                    return lower;
+                }
+            }
+        }
+
+        long moves = BitBoard.validMoves(own, other);
+
+        if (moves == 0) {
+            if (passed || BitBoard.validMoves(other, own) == 0) {
+                return finalDifferential(own, other);
+            }
+
+            return -solve(other, own, -beta, -alpha, true);
+        }
+
+        int origAlpha = alpha;
+        int origBeta = beta;
+        long key = 0;
+        int tableMove = TranspositionTable.NO_MOVE;
+
+        if (empties >= TABLE_EMPTIES) {
+            key = hashKey(own, other);
+            long entry = transpositionTable.get(key);
+
+            if (entry != TranspositionTable.MISS) {
+                int value = TranspositionTable.valueOf(entry);
+
+                switch (TranspositionTable.flagOf(entry)) {
+                    case EXACT:
+                        return value;
+                    case LOWERBOUND:
+                        alpha = Math.max(alpha, value);
+                        break;
+                    case UPPERBOUND:
+                        beta = Math.min(beta, value);
+                        break;
+                }
+                if (alpha >= beta) {
+                    return value;
+                }
+
+                tableMove = TranspositionTable.bestMoveOf(entry);
+            }
+        }
+
+        int numMoves = order(own, other, moves, empty, empties, tableMove);
+        int[] list = moveLists[empties];
+        int best = -MAX_DIFFERENTIAL - 1;
+        int bestMove = TranspositionTable.NO_MOVE;
+
+        for (int i = 0; i < numMoves; i++) {
+            int pos = list[i];
+            long flips = BitBoard.flips(own, other, pos);
+
+            int value = -solve(other & ~flips, own | flips | (1L << pos), -beta, -alpha, false);
+
+            if (value > best) {
+                best = value;
+                bestMove = pos;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (empties >= TABLE_EMPTIES) {
+            TranspositionTable.Flag flag;
+            if (best <= origAlpha) {
+                flag = TranspositionTable.Flag.UPPERBOUND;
+            } else if (best >= origBeta) {
+                flag = TranspositionTable.Flag.LOWERBOUND;
+            } else {
+                flag = TranspositionTable.Flag.EXACT;
+            }
+            transpositionTable.put(key, best, empties, flag, bestMove);
+        }
+
+        return best;
+    }
+
+    /**
+     * Determine the final differential with a single empty square left.
+     */
+    private int solveLastMove(long own, long other, int pos) {
+        long flips = BitBoard.flips(own, other, pos);
+
+        if (flips != 0) {
+            return finalDifferential(own | flips | (1L << pos), other & ~flips);
+        }
+
+        flips = BitBoard.flips(other, own, pos);
+
+        if (flips != 0) {
+            return finalDifferential(own & ~flips, other | flips | (1L << pos));
+        }
+
+        return finalDifferential(own, other);
+    }
+
+    /**
+     * Order moves into the move list for this number of empties.
+     *
+     * @return the number of moves
+     */
+    private int order(long own, long other, long moves, long empty, int empties, int tableMove) {
+        int[] list = moveLists[empties];
+        int[] scores = moveScores[empties];
+        long oddQuadrants = 0;
+        int count = 0;
+
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                oddQuadrants |= quadrant;
+            }
+        }
+
+        for (; moves != 0; moves &= moves - 1) {
+            int pos = Long.numberOfTrailingZeros(moves);
+            long bit = 1L << pos;
+            int score = (oddQuadrants & bit) != 0 ? 1 : 0;
+
+            if (pos == tableMove) {
+                score = Integer.MAX_VALUE;
+            } else if (empties > MOBILITY_ORDER_EMPTIES) {
+                long flips = BitBoard.flips(own, other, pos);
+                int mobility = Long.bitCount(BitBoard.validMoves(other & ~flips, own | flips | bit));
+
+                score -= 4 * mobility;
+            }
+
+            // Insertion sort.  There are few moves.
+            int i = count++;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                list[i] = list[i - 1];
+                --i;
+            }
+            scores[i] = score;
+            list[i] = pos;
+        }
+
+        return count;
+    }
+
+    /**
+     * Hash a position.  The player to move is implied by the order of the
+     * arguments.
+     */
+    private static long hashKey(long own, long other) {
+        long h = own * 0x9e3779b97f4a7c15L ^ Long.rotateLeft(other * 0xc2b2ae3d27d4eb4fL, 31);
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+
+        return h;
+    }
+
+    /**
+     * Disc differential of a final position.  Empty squares go to the winner.
+     */
+    private static int finalDifferential(long own, long other) {
+        int diff = Long.bitCount(own) - Long.bitCount(other);
+        int empties = Board.BOARD_LSIZE - Long.bitCount(own | other);
+
+        if (diff > 0) {
+            return diff + empties;
+        } else if (diff < 0) {
+            return diff - empties;
+        }
+
+        return 0;
+    }
+}
@@ -146,6 +146,7 @@ public class GameExecutor {
     private volatile boolean stopGameThread = false;
     private Deque<Tracker> history = new ConcurrentLinkedDeque<>();
     private Tracker currentState;
+    private final AnalysisCache analysisCache = new AnalysisCache();
 
     public void close() {
         endGame();
@@ -229,27 +230,31 @@ public class GameExecutor {
 
             Log.i(TAG, "runOneGame: updating current state");
             currentState = tracker;
+            Tracker turn = tracker;
 
-            tracker = Optional.ofNullable(
-                    Flux
-                            .just(new Tracker(tracker))
-                            .doOnNext(trkr -> sendRedrawRequest(uiThreadHandler, trkr))
-                            .flatMap(trkr -> nextTurn(trkr))
-                            .doOnNext(trkr -> {
-                                if (trkr.getNotification() instanceof MoveNotification) {
-                                    Log.d(TAG, "game: " + trkr.toString());
-                                }
-                            })
-                            // FIXME Reactor Core doesn't have a way to get a UI thread Scheduler.
-                            //       Would really like to avoid the Handler.
-                            .doOnNext(trkr -> sendRedrawRequest(uiThreadHandler, trkr))
-                            .doOnError(error -> {
-                                Log.i(TAG, "runOneGame", error);
-                                sendRedrawRequest(uiThreadHandler, null);
-                            }) // FIXME
-                            .blockLast())
-                    .orElse(new Tracker(tracker)); // keep old state on error
-
+            try {
+                tracker = Optional.ofNullable(
+                        Flux
+                                .just(new Tracker(tracker))
+                                .doOnNext(trkr -> sendRedrawRequest(uiThreadHandler, trkr))
+                                .flatMap(trkr -> nextTurn(trkr))
+                                .doOnNext(trkr -> {
+                                    if (trkr.getNotification() instanceof MoveNotification) {
+                                        Log.d(TAG, "game: " + trkr.toString());
+                                    }
+                                })
+                                // FIXME Reactor Core doesn't have a way to get a UI thread Scheduler.
+                                //       Would really like to avoid the Handler.
+                                .doOnNext(trkr -> sendRedrawRequest(uiThreadHandler, trkr))
+                                .doOnError(error -> {
+                                    Log.i(TAG, "runOneGame", error);
+                                    sendRedrawRequest(uiThreadHandler, null);
+                                }) // FIXME
+                                .blockLast())
+                        .orElse(new Tracker(tracker)); // keep old state on error
+            } finally {
+                stopBackgroundSearches(turn);
+            }
         }
 
         Log.i(TAG, "runOneGame: game complete");
@@ -258,11 +263,29 @@ public class GameExecutor {
         return null;
     }
 
+    /**
+     * Stop pondering and the analysis for hints started for a turn.  Both
+     * wait for background threads, so they are stopped here on the game
+     * thread rather than on the thread that ended the turn, which is the UI
+     * thread when a human moves.
+     *
+     * @param tracker the state the turn started from
+     */
+    private void stopBackgroundSearches(Tracker tracker) {
+        for (Player player : tracker.player) {
+            if (player instanceof ComputerPlayer) {
+                SearchEngine.forColor(player.getColor()).stopPondering((ComputerPlayer) player);
+            }
+        }
+        analysisCache.stop();
+    }
+
     private Tracker newGame() {
         Log.i(TAG, "newGame");
 
         // Beware the side effects
         history.clear();
+        analysisCache.clear();
         currentState = null;
 
         Tracker tracker = new Tracker();
@@ -295,7 +318,7 @@ public class GameExecutor {
                 ComputerPlayer cplayer = new ComputerPlayer(color, prefs);
                 tracker.setPlayer(index, cplayer);
             } else {
-                tracker.setPlayer(index, new HumanPlayer(color));
+                tracker.setPlayer(index, new HumanPlayer(color, analysisCache));
             }
         } catch (Exception e) {
             Log.w(TAG, "Cannot apply preferences", e);
@@ -312,6 +335,19 @@ public class GameExecutor {
                         case TURN_PLAYER_0:
                         case TURN_PLAYER_1: {
                             Player me = (tracker.state == GameState.TURN_PLAYER_0) ? tracker.player[0] : tracker.player[1];
+                            Player opponent = (tracker.state == GameState.TURN_PLAYER_0) ? tracker.player[1] : tracker.player[0];
+
+                            // Let the computer think while the human does
+                            if (!me.isComputer() && opponent instanceof ComputerPlayer) {
+                                ((ComputerPlayer) opponent).ponder(tracker.board);
+                            }
+
+                            // Prepare hints
+                            if (!me.isComputer()) {
+                                analysisCache.analyze(tracker.board, me.getColor());
+                            }
+
+                            // Both are stopped by runOneGame once the turn is over
                             return me.makeMove(tracker.board)
                                     .flatMapSequential(notification -> {
                                         Tracker copy = new Tracker(tracker);
@@ -29,7 +29,8 @@ import java.lang.reflect.Type;
  * <p>
  * Note: The reason this exists is because Players
  * are polymorphic and Gson (really Json) cannot handle it
- * without help.
+ * without help.  Boards are kept as bitboards but are
+ * serialized as a linear array of cells.
  * <p>
  * Created by npapke on 3/19/15.
  */
@@ -70,6 +71,8 @@ public class GameExecutorSerializer {
         GsonBuilder gson = new GsonBuilder()
                 .registerTypeAdapter(Player.class, new PlayerDeserializer())
                 .registerTypeAdapter(Player.class, new PlayerSerializer())
+                .registerTypeAdapter(Board.class, new BoardDeserializer())
+                .registerTypeAdapter(Board.class, new BoardSerializer())
                 .serializeNulls();
 
         return gson.create();
@@ -118,4 +121,49 @@ public class GameExecutorSerializer {
         }
     }
 
+    /*
+     * ==============================================================
+     *
+     * Serialize Boards as a linear array of cells, e.g.,
+     * {"board":["EMPTY",...,"WHITE",...],"serial":1,"lastMovePos":19,...}
+     *
+     */
+
+    private class BoardDeserializer implements JsonDeserializer<Board> {
+        public Board deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+                throws JsonParseException {
+            JsonObject obj = json.getAsJsonObject();
+
+            BoardValue[] cells = context.deserialize(obj.get("board"), BoardValue[].class);
+            if (cells == null) {
+                throw new JsonParseException("Board has no cells");
+            }
+
+            BoardValue lastMoveValue = context.deserialize(obj.get("lastMoveValue"), BoardValue.class);
+            JsonElement lastMovePos = obj.get("lastMovePos");
+            JsonElement serial = obj.get("serial");
+
+            return new Board(
+                    cells,
+                    (lastMovePos == null || lastMovePos.isJsonNull()) ? 0 : lastMovePos.getAsInt(),
+                    lastMoveValue,
+                    (serial == null || serial.isJsonNull()) ? -1 : serial.getAsInt());
+        }
+    }
+
+    private class BoardSerializer implements JsonSerializer<Board> {
+        public JsonElement serialize(Board src, Type typeOfSrc, JsonSerializationContext context) {
+            Move lastMove = src.getLastMove();
+
+            JsonObject obj = new JsonObject();
+            obj.add("board", context.serialize(src.getLvalue(), BoardValue[].class));
+            obj.addProperty("serial", src.serial);
+            obj.addProperty("lastMovePos", lastMove.getPosition().getLinear());
+            obj.add("lastMoveValue", context.serialize(lastMove.getValue(), BoardValue.class));
+            obj.addProperty("numPieces", src.getNumPieces());
+
+            return obj;
+        }
+    }
+
 }
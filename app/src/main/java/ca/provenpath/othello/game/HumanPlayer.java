@@ -19,6 +19,8 @@
 
 package ca.provenpath.othello.game;
 
+import ca.provenpath.othello.game.observer.AnalysisBoardNotification;
+import ca.provenpath.othello.game.observer.AnalysisValueNotification;
 import ca.provenpath.othello.game.observer.GameNotification;
 import ca.provenpath.othello.game.observer.MoveNotification;
 import reactor.core.publisher.Flux;
@@ -32,10 +34,23 @@ import java.time.Instant;
 public class HumanPlayer extends Player {
     public final static String TAG = HumanPlayer.class.getName();
 
+    private transient AnalysisCache analysisCache;
+
     public HumanPlayer(BoardValue color) {
         super(color);
     }
 
+    /**
+     * Construct a player whose hints come from a background analysis.
+     *
+     * @param color         the color of the player
+     * @param analysisCache the analysis of the game
+     */
+    public HumanPlayer(BoardValue color, AnalysisCache analysisCache) {
+        this(color);
+        this.analysisCache = analysisCache;
+    }
+
     public HumanPlayer(String serial) {
         super(serial);
     }
@@ -52,6 +67,12 @@ public class HumanPlayer extends Player {
                                                 new Move(getColor(), new Position(move)), Instant.now()));
                             } else if (move < 0) {
                                 // A hint is requested
+                                AnalysisCache.Hint hint = analysisCache != null ? analysisCache.get(board, getColor()) : null;
+                                if (hint != null) {
+                                    return hintOf(board, hint);
+                                }
+
+                                // Not analyzed yet, take a quick look
                                 ComputerPlayer computerPlayer = new ComputerPlayer(color);
                                 computerPlayer.setDelayInitialNotification(Duration.ZERO);
                                 computerPlayer.setShowOverlay(true);
@@ -69,4 +90,21 @@ public class HumanPlayer extends Player {
                 );
     }
 
+    /**
+     * Get the notifications that show a hint from the analysis.
+     *
+     * @param board the board to move on
+     * @param hint  the best move
+     * @return the notifications
+     */
+    private Flux<GameNotification> hintOf(Board board, AnalysisCache.Hint hint) {
+        Board hintBoard = new Board(board);
+        hintBoard.setBoardValue(hint.getPosition(), BoardValue.BEST_MOVE);
+
+        int value = Strategy.normalizeScore(hint.getValue());
+
+        return Flux.just(
+                new AnalysisBoardNotification(value, hint.getPosition(), true, hintBoard),
+                new AnalysisValueNotification(value, hint.getPosition(), true));
+    }
 }
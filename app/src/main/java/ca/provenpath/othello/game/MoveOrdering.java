@@ -0,0 +1,156 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import java.util.Arrays;
+
+/**
+ * Orders the moves of interior nodes so that alpha-beta finds cutoffs
+ * early.  Moves are tried in this order:
+ * <ol>
+ * <li>the best move from the transposition table</li>
+ * <li>the killer moves, i.e., moves that recently caused a cutoff at the same ply</li>
+ * <li>the remaining moves by their history, i.e., how often and how deep they caused cutoffs</li>
+ * </ol>
+ * <p>
+ * Not thread-safe.  Each search thread requires its own instance.
+ * </p>
+ *
+ * @author npapke
+ */
+public class MoveOrdering {
+
+    private static final int KILLERS_PER_PLY = 2;
+
+    private static final int TT_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int KILLER_SCORE = Integer.MAX_VALUE - KILLERS_PER_PLY - 1;
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    private final int[][] killers = new int[SearchBoard.MAX_PLY][KILLERS_PER_PLY];
+    private final int[][] history = new int[2][Board.BOARD_LSIZE];
+    private final int[][] moveLists = new int[SearchBoard.MAX_PLY][Board.BOARD_LSIZE];
+    private final int[] scores = new int[Board.BOARD_LSIZE];
+
+    public MoveOrdering() {
+        for (int[] killer : killers) {
+            Arrays.fill(killer, TranspositionTable.NO_MOVE);
+        }
+    }
+
+    /**
+     * Prepare for a new search.  Plies are relative to the root, so the
+     * killers no longer apply.  The history is aged, but kept.
+     */
+    public void newSearch() {
+        for (int[] killer : killers) {
+            Arrays.fill(killer, TranspositionTable.NO_MOVE);
+        }
+
+        ageHistory();
+    }
+
+    /**
+     * Forget everything learned, e.g., to make a search reproducible.
+     */
+    public void clear() {
+        for (int[] killer : killers) {
+            Arrays.fill(killer, TranspositionTable.NO_MOVE);
+        }
+        for (int[] colorHistory : history) {
+            Arrays.fill(colorHistory, 0);
+        }
+    }
+
+    /**
+     * Order moves.  The list is valid until moves are ordered again at
+     * the same ply.
+     *
+     * @param moves  mask of valid moves
+     * @param player the player to move
+     * @param ply    distance from the root
+     * @param ttMove best move from the transposition table, or {@link TranspositionTable#NO_MOVE}
+     * @return the moves, best first.  The array has room to spare, the
+     * number of moves is the number of bits in <code>moves</code>.
+     */
+    public int[] order(long moves, BoardValue player, int ply, int ttMove) {
+        int[] list = moveLists[ply];
+        int[] colorHistory = history[colorIndex(player)];
+        int count = 0;
+
+        for (; moves != 0; moves &= moves - 1) {
+            int pos = Long.numberOfTrailingZeros(moves);
+            int score;
+
+            if (pos == ttMove) {
+                score = TT_MOVE_SCORE;
+            } else if (pos == killers[ply][0]) {
+                score = KILLER_SCORE;
+            } else if (pos == killers[ply][1]) {
+                score = KILLER_SCORE - 1;
+            } else {
+                score = colorHistory[pos];
+            }
+
+            // Insertion sort.  There are few moves.
+            int i = count++;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                list[i] = list[i - 1];
+                --i;
+            }
+            scores[i] = score;
+            list[i] = pos;
+        }
+
+        return list;
+    }
+
+    /**
+     * Record a move that caused a cutoff.
+     *
+     * @param player the player who made the move
+     * @param ply    distance from the root
+     * @param pos    linear position of the move
+     * @param depth  remaining depth of the search below the move
+     */
+    public void cutoff(BoardValue player, int ply, int pos, int depth) {
+        if (killers[ply][0] != pos) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = pos;
+        }
+
+        history[colorIndex(player)][pos] += depth * depth;
+        if (history[colorIndex(player)][pos] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for (int[] colorHistory : history) {
+            for (int pos = 0; pos < colorHistory.length; pos++) {
+                colorHistory[pos] /= 2;
+            }
+        }
+    }
+
+    private static int colorIndex(BoardValue player) {
+        return player == BoardValue.BLACK ? 0 : 1;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameters for Multi-ProbCut selective pruning.
+ * <p>
+ * The value of a deep search is predicted from the value of a shallow
+ * search of the same board by linear regression:
+ * <code>deep = slope * shallow + intercept</code>, with the residuals
+ * having a standard deviation of <code>sigma</code>.  If the shallow
+ * search shows that the deep value is very likely outside the window,
+ * the deep search is skipped.
+ * </p>
+ * <p>
+ * The parameters depend on the strategy, the depth pair and the stage of
+ * the game.  Depths deeper than the deepest calibrated depth use the
+ * parameters of the deepest pair with the same reduction in depth.
+ * Strategies without parameters are not pruned.
+ * </p>
+ *
+ * @author npapke
+ * @see ProbCutCalibration
+ */
+public class ProbCut {
+    public final static String TAG = ProbCut.class.getSimpleName();
+
+    /**
+     * Number of standard deviations the prediction has to clear the window by.
+     */
+    public static final double THRESHOLD = 1.5;
+
+    /**
+     * Nodes with less remaining depth are not pruned.
+     */
+    public static final int MIN_DEPTH = 3;
+
+    /**
+     * Number of game stages.
+     */
+    public static final int STAGES = 3;
+
+    /**
+     * A depth pair.
+     */
+    public static class Cut {
+        final int reduction;
+        final double slope;
+        final double intercept;
+        final double sigma;
+
+        Cut(int reduction, double slope, double intercept, double sigma) {
+            this.reduction = reduction;
+            this.slope = slope;
+            this.intercept = intercept;
+            this.sigma = sigma;
+        }
+
+        /**
+         * Get the depth of the shallow search.
+         *
+         * @param depth the depth of the deep search
+         * @return the depth of the shallow search
+         */
+        public int shallowDepth(int depth) {
+            return depth - reduction;
+        }
+
+        /**
+         * Get the value the shallow search has to reach to predict a deep
+         * value of at least beta.
+         *
+         * @param beta the upper bound of the window
+         * @return the bound for the shallow search
+         */
+        public int highBound(int beta) {
+            return (int) Math.ceil((beta + THRESHOLD * sigma - intercept) / slope);
+        }
+
+        /**
+         * Get the value the shallow search has to stay below to predict a
+         * deep value of at most alpha.
+         *
+         * @param alpha the lower bound of the window
+         * @return the bound for the shallow search
+         */
+        public int lowBound(int alpha) {
+            return (int) Math.floor((alpha - THRESHOLD * sigma - intercept) / slope);
+        }
+    }
+
+    /*
+     * Fitted by ProbCutCalibration from 300 positions per stage, searched
+     * to depth 8.  Each row is
+     * {stage, deep depth, shallow depth, slope, intercept, sigma}.
+     */
+    private static final Map<String, double[][]> PARAMETERS = new HashMap<>();
+
+    static {
+        PARAMETERS.put("AdaptiveStrategy", new double[][]{
+                {0, 3, 1, 1.032, 20.2, 27.8},
+                {0, 4, 0, 1.043, 26.4, 42.2},
+                {0, 4, 2, 1.048, 11.8, 23.9},
+                {0, 5, 1, 1.079, 33.4, 37.9},
+                {0, 5, 3, 1.057, 9.9, 19.1},
+                {0, 6, 2, 1.062, 25.2, 32.8},
+                {0, 6, 4, 1.023, 11.8, 17.7},
+                {0, 7, 3, 1.093, 27.5, 28.9},
+                {0, 7, 5, 1.043, 15.3, 16.1},
+                {0, 8, 4, 1.056, 23.9, 28.6},
+                {0, 8, 6, 1.042, 10.0, 17.0},
+                {1, 3, 1, 1.137, -13.6, 87.5},
+                {1, 4, 0, 1.247, -58.6, 140.7},
+                {1, 4, 2, 1.139, -19.1, 76.1},
+                {1, 5, 1, 1.251, -28.6, 129.5},
+                {1, 5, 3, 1.116, -21.4, 64.3},
+                {1, 6, 2, 1.285, -43.3, 131.3},
+                {1, 6, 4, 1.145, -27.3, 76.3},
+                {1, 7, 3, 1.266, -54.7, 117.7},
+                {1, 7, 5, 1.146, -36.2, 73.4},
+                {1, 8, 4, 1.318, -61.4, 131.7},
+                {1, 8, 6, 1.164, -34.5, 73.4},
+                {2, 3, 1, 1.120, -27.2, 207.2},
+                {2, 4, 0, 1.243, -14.5, 354.4},
+                {2, 4, 2, 1.126, -0.1, 195.4},
+                {2, 5, 1, 1.235, -70.1, 317.0},
+                {2, 5, 3, 1.129, -58.2, 172.1},
+                {2, 6, 2, 1.233, -8.1, 307.9},
+                {2, 6, 4, 1.122, -13.6, 180.2},
+                {2, 7, 3, 1.276, -109.3, 278.4},
+                {2, 7, 5, 1.141, -59.2, 167.8},
+                {2, 8, 4, 1.272, -3.4, 324.2},
+                {2, 8, 6, 1.150, 7.9, 212.0},
+        });
+        PARAMETERS.put("StaticStrategy", new double[][]{
+                {0, 3, 1, 0.993, 356.5, 1118.8},
+                {0, 4, 0, 1.012, 151.6, 1453.3},
+                {0, 4, 2, 0.987, 159.4, 1013.8},
+                {0, 5, 1, 1.015, 533.1, 1412.9},
+                {0, 5, 3, 1.033, 151.6, 743.8},
+                {0, 6, 2, 1.002, 219.0, 1457.3},
+                {0, 6, 4, 1.044, 69.8, 830.1},
+                {0, 7, 3, 1.044, 275.1, 1042.6},
+                {0, 7, 5, 1.023, 100.4, 591.3},
+                {0, 8, 4, 1.072, 37.1, 1115.1},
+                {0, 8, 6, 1.041, -29.1, 543.3},
+                {1, 3, 1, 1.066, 287.1, 1936.4},
+                {1, 4, 0, 1.132, 500.2, 2903.7},
+                {1, 4, 2, 1.067, 381.3, 1843.6},
+                {1, 5, 1, 1.129, 449.1, 2865.2},
+                {1, 5, 3, 1.074, 112.1, 1469.5},
+                {1, 6, 2, 1.125, 585.6, 3353.4},
+                {1, 6, 4, 1.080, 209.6, 1941.9},
+                {1, 7, 3, 1.149, 58.3, 2960.3},
+                {1, 7, 5, 1.089, -112.3, 1801.3},
+                {1, 8, 4, 1.177, 430.2, 3142.3},
+                {1, 8, 6, 1.106, 216.3, 1560.6},
+                {2, 3, 1, 1.066, 145.3, 4187.8},
+                {2, 4, 0, 1.138, 1392.5, 7457.3},
+                {2, 4, 2, 1.090, 804.3, 4119.8},
+                {2, 5, 1, 1.171, 277.2, 6903.6},
+                {2, 5, 3, 1.122, -104.6, 3898.4},
+                {2, 6, 2, 1.213, 1844.5, 6898.8},
+                {2, 6, 4, 1.131, 1037.9, 3857.6},
+                {2, 7, 3, 1.258, -653.8, 6568.0},
+                {2, 7, 5, 1.125, -527.3, 3942.7},
+                {2, 8, 4, 1.250, 1200.0, 5874.0},
+                {2, 8, 6, 1.117, 368.7, 3329.8},
+        });
+    }
+
+    private static final Map<String, ProbCut> INSTANCES = new HashMap<>();
+
+    /**
+     * Get the parameters for a strategy.
+     *
+     * @param strategy the strategy
+     * @return the parameters, or null if the strategy has not been calibrated
+     */
+    public static synchronized ProbCut forStrategy(Strategy strategy) {
+        String name = strategy.toString();
+
+        if (!INSTANCES.containsKey(name)) {
+            double[][] rows = PARAMETERS.get(name);
+            INSTANCES.put(name, rows == null || rows.length == 0 ? null : new ProbCut(rows));
+        }
+
+        return INSTANCES.get(name);
+    }
+
+    /**
+     * Determine the stage of the game.
+     *
+     * @param empties the number of empty squares
+     * @return the stage, from 0 for the opening to {@link #STAGES} - 1 for the endgame
+     */
+    public static int stageOf(int empties) {
+        if (empties > 40) {
+            return 0;
+        } else if (empties > 20) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /*
+     * Indexed by stage and deep depth.  Cuts are ordered by decreasing
+     * reduction, i.e., cheapest shallow search first.
+     */
+    private final Cut[][][] cuts;
+    private final int maxDepth;
+
+    ProbCut(double[][] rows) {
+        int deepest = 0;
+        for (double[] row : rows) {
+            deepest = Math.max(deepest, (int) row[1]);
+        }
+
+        maxDepth = deepest;
+        cuts = new Cut[STAGES][deepest + 1][];
+
+        for (int stage = 0; stage < STAGES; stage++) {
+            for (int depth = 0; depth <= deepest; depth++) {
+                List<Cut> list = new ArrayList<>();
+
+                for (double[] row : rows) {
+                    if ((int) row[0] == stage && (int) row[1] == depth) {
+                        list.add(new Cut((int) (row[1] - row[2]), row[3], row[4], row[5]));
+                    }
+                }
+
+                Cut[] array = list.toArray(new Cut[list.size()]);
+                Arrays.sort(array, (a, b) -> b.reduction - a.reduction);
+                cuts[stage][depth] = array;
+            }
+        }
+    }
+
+    /**
+     * Get the depth pairs to try for a node.
+     *
+     * @param depth   the remaining depth of the node
+     * @param empties the number of empty squares
+     * @return the depth pairs, cheapest first.  May be empty.
+     */
+    public Cut[] cutsFor(int depth, int empties) {
+        return cuts[stageOf(empties)][Math.min(depth, maxDepth)];
+    }
+}
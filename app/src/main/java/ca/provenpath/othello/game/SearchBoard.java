@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import static ca.provenpath.othello.game.BoardValue.*;
+
+/**
+ * A board for the game tree search.  Moves are made in place and
+ * can be taken back.  The state required to undo a move is kept on a
+ * stack that is allocated once, so walking the tree does not allocate.
+ * <p>
+ * Not thread-safe.  Each search thread requires its own instance.
+ * </p>
+ *
+ * @author npapke
+ */
+public class SearchBoard extends Board {
+
+    /**
+     * Maximum number of moves that can be undone.  Every move occupies a
+     * cell, with room to spare for passes.
+     */
+    public static final int MAX_PLY = 2 * BOARD_LSIZE;
+
+    private final long[] blackStack = new long[MAX_PLY];
+    private final long[] whiteStack = new long[MAX_PLY];
+    private final long[] validBlackStack = new long[MAX_PLY];
+    private final long[] validWhiteStack = new long[MAX_PLY];
+    private final long[] zobristStack = new long[MAX_PLY];
+    private final int[] lastMovePosStack = new int[MAX_PLY];
+    private final BoardValue[] lastMoveValueStack = new BoardValue[MAX_PLY];
+
+    private int ply = 0;
+
+    /**
+     * Construct a search board.
+     *
+     * @param other the position to search from
+     */
+    public SearchBoard(Board other) {
+        super(other);
+    }
+
+    /**
+     * Construct a copy of a search board.  The moves played on the other
+     * board can be undone on the copy as well.
+     *
+     * @param other the search board to copy
+     */
+    public SearchBoard(SearchBoard other) {
+        super(other);
+
+        ply = other.ply;
+        System.arraycopy(other.blackStack, 0, blackStack, 0, ply);
+        System.arraycopy(other.whiteStack, 0, whiteStack, 0, ply);
+        System.arraycopy(other.validBlackStack, 0, validBlackStack, 0, ply);
+        System.arraycopy(other.validWhiteStack, 0, validWhiteStack, 0, ply);
+        System.arraycopy(other.zobristStack, 0, zobristStack, 0, ply);
+        System.arraycopy(other.lastMovePosStack, 0, lastMovePosStack, 0, ply);
+        System.arraycopy(other.lastMoveValueStack, 0, lastMoveValueStack, 0, ply);
+    }
+
+    /**
+     * Applies the specified move to the board.  The move can be undone.
+     *
+     * @param player the player making the move
+     * @param pos    linear position of the move
+     * @see #undo()
+     */
+    public void play(BoardValue player, int pos) {
+        blackStack[ply] = getPieces(BLACK);
+        whiteStack[ply] = getPieces(WHITE);
+        validBlackStack[ply] = getValidMoves(BLACK);
+        validWhiteStack[ply] = getValidMoves(WHITE);
+        zobristStack[ply] = zobrist;
+        lastMovePosStack[ply] = lastMovePos;
+        lastMoveValueStack[ply] = lastMoveValue;
+        ply++;
+
+        makeMove(player, pos);
+    }
+
+    /**
+     * Takes back the most recent move.
+     */
+    public void undo() {
+        Assert.isTrue(ply > 0, "Nothing to undo");
+
+        --ply;
+        restore(blackStack[ply], whiteStack[ply], validBlackStack[ply], validWhiteStack[ply], zobristStack[ply],
+                lastMovePosStack[ply], lastMoveValueStack[ply]);
+    }
+
+    /**
+     * Get the number of moves that can be undone.
+     *
+     * @return the number of moves played since construction
+     */
+    public int getPly() {
+        return ply;
+    }
+}
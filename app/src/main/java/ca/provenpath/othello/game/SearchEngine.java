@@ -0,0 +1,2053 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+import ca.provenpath.othello.game.observer.AnalysisBoardNotification;
+import ca.provenpath.othello.game.observer.AnalysisValueNotification;
+import ca.provenpath.othello.game.observer.EngineNotification;
+import ca.provenpath.othello.game.observer.GameNotification;
+import ca.provenpath.othello.game.observer.PrincipalVariationNotification;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The game tree search for a computer player.
+ * <p>
+ * Players are re-created whenever preferences are applied.  The engine
+ * outlives them, so that knowledge gained while searching, i.e., the
+ * transposition table, carries over from one move to the next.  There
+ * is one engine per color because evaluations are from the perspective
+ * of the engine's color.
+ * </p>
+ * <p>
+ * The moves of the first ply can be searched in parallel.  The first
+ * move is searched on its own to establish a bound.  The remaining moves
+ * are then distributed over a pool of worker threads.  The workers share
+ * the transposition table and the best value found so far.  Everything
+ * else a worker needs is kept in its own {@link Searcher}.
+ * </p>
+ * <p>
+ * Alternatively, in Lazy SMP mode, the first ply is searched on the
+ * calling thread only.  Helper threads run their own iterative deepening
+ * on the same board, staggered by depth.  The helpers coordinate with
+ * the calling thread only through the transposition table, which they
+ * fill with results the calling thread is about to need.
+ * </p>
+ * <p>
+ * When splitting the first ply, the search can optionally split interior
+ * nodes as well, following the Young Brothers Wait Concept.  Once the
+ * eldest child of a deep enough node has been searched, its younger
+ * siblings become tasks that idle threads can steal.  A cutoff in any
+ * sibling cancels the siblings that are still pending and stops those
+ * that are running.
+ * </p>
+ * <p>
+ * While the opponent is thinking, the engine can ponder, i.e., search the
+ * position the opponent has to move in.  The transposition table keeps the
+ * results, so once the opponent has moved, the search of the engine's own
+ * move finds the subtree of that move already explored.  Pondering runs on
+ * a background thread at low priority and pauses regularly to stay within
+ * its share of the CPU.
+ * </p>
+ * <p>
+ * For the analysis overlay, the engine can determine exact values for the
+ * best K moves of the first ply instead of only the best one (Multi-PV).
+ * Moves are then tested against the K-th best value found so far rather
+ * than the best.  Only moves that may enter the top K are re-searched with
+ * an open window, which costs far less than K separate searches.
+ * </p>
+ * <p>
+ * After each heuristic iteration, the principal variation, i.e., the line
+ * of play expected by the search, is read from the best moves stored in
+ * the transposition table.  It is reported, and the next iteration tries its
+ * moves first, even where their table entries have since been replaced.
+ * </p>
+ * <p>
+ * Instead of the clock, the search can be limited by a budget of boards
+ * evaluated.  The search then runs on the calling thread only, starts
+ * without any knowledge from earlier searches and breaks ties between
+ * moves with a seeded random generator, so that the same position and
+ * budget always give the same move and statistics.
+ * </p>
+ *
+ * @author npapke
+ */
+public class SearchEngine {
+    public final static String TAG = SearchEngine.class.getSimpleName();
+
+    /**
+     * Interior nodes with at least this remaining depth are split.
+     */
+    private static final int SPLIT_DEPTH = 4;
+
+    /**
+     * Windows must lie within [-PROBCUT_LIMIT, PROBCUT_LIMIT] for ProbCut.
+     * Regressions do not apply to terminal values.
+     */
+    private static final int PROBCUT_LIMIT = Strategy.WIN_BASE / 2;
+
+    /**
+     * Nodes with at least this remaining depth probe the transposition
+     * table for their children before searching them.
+     */
+    private static final int ETC_DEPTH = 4;
+
+    /**
+     * Pondering checks its share of the CPU every this many interrupt checks (plus one).
+     */
+    private static final int PONDER_CHECK_MASK = 0x3ff;
+
+    /**
+     * Pondering pauses after running for this long.
+     */
+    private static final long PONDER_SLICE_NANOS = 20000000;
+
+    /**
+     * Longest sleep of a pause, so that pondering stops promptly.
+     */
+    private static final long PONDER_SLEEP_MS = 5;
+
+    /**
+     * Check the node budget every this many checks for interruption (minus one).
+     */
+    private static final int BUDGET_CHECK_MASK = 0xff;
+
+    //region [Singleton]
+    private static final Map<BoardValue, SearchEngine> engines = new EnumMap<>(BoardValue.class);
+
+    /**
+     * Get the engine for a player.
+     *
+     * @param color color of the player
+     * @return the engine
+     */
+    public static synchronized SearchEngine forColor(BoardValue color) {
+        Assert.isTrue(color.isPlayer());
+
+        SearchEngine engine = engines.get(color);
+        if (engine == null) {
+            engine = new SearchEngine(color);
+            engines.put(color, engine);
+        }
+        return engine;
+    }
+    //endregion
+
+    private final BoardValue color;
+    private TranspositionTable transpositionTable;
+    private String tableStrategy;
+    private ForkJoinPool pool;
+    private final List<Searcher> searchers = new CopyOnWriteArrayList<>();
+    private final Queue<Searcher> idleSearchers = new ConcurrentLinkedQueue<>();
+
+    /*
+     * State of the current search
+     */
+    private ComputerPlayer player;
+    private Strategy strategy;
+    private MiniMaxResult previousBestResult;
+    private int[] aspirationWindows;
+    private int endgameEmpties;
+    private int winLossDrawEmpties;
+    private ProbCut probCut;
+    private int multiPv;
+    private volatile PrincipalVariation principalVariation;
+    private long nodeBudget;
+    private int budgetChecks;
+    private Random random = new Random();
+    private TimeManager timeManager;
+    private volatile int searchId = 0;
+    private boolean splitRoot;
+    private boolean splitInterior;
+    private volatile boolean helpersStopped;
+    private Stats stats = new Stats();
+
+    /*
+     * State of pondering
+     */
+    private final Object ponderLock = new Object();
+    private Thread ponderThread;
+    private ComputerPlayer ponderPlayer;
+    private boolean tablePondered;
+    private boolean pondering;
+    private double ponderShare;
+    private int ponderChecks;
+    private long ponderSliceStart;
+
+    SearchEngine(BoardValue color) {
+        this.color = color;
+    }
+
+    /**
+     * Find the best move for the player, searching to the maximum depth
+     * unless interrupted.
+     *
+     * @param player             the player to move.  Supplies the search settings.
+     * @param board              the board to move on
+     * @param notificationSinkFn receives progress and analysis notifications
+     * @return the best move
+     */
+    public MiniMaxResult search(
+            ComputerPlayer player,
+            Board board,
+            Consumer<GameNotification> notificationSinkFn) {
+        return search(player, board, null, notificationSinkFn);
+    }
+
+    /**
+     * Find the best move for the player.
+     * <p>
+     * Searches are serialized, an engine only performs one search at a time.
+     * </p>
+     *
+     * @param player             the player to move.  Supplies the search settings.
+     * @param board              the board to move on
+     * @param timeManager        decides whether to start another iteration.  May be null.
+     * @param notificationSinkFn receives progress and analysis notifications
+     * @return the best move
+     */
+    public synchronized MiniMaxResult search(
+            ComputerPlayer player,
+            Board board,
+            TimeManager timeManager,
+            Consumer<GameNotification> notificationSinkFn) {
+        Assert.isTrue(player.getColor() == color);
+
+        this.player = player;
+        this.strategy = player.getStrategy();
+        this.aspirationWindows = player.getAspirationWindows();
+        this.endgameEmpties = player.getEndgameEmpties();
+        this.winLossDrawEmpties = player.getWinLossDrawEmpties();
+        this.probCut = player.isProbCut() ? ProbCut.forStrategy(strategy) : null;
+        // The values of the other moves are only of use on the overlay
+        this.multiPv = player.isShowOverlay() ? Math.max(1, player.getMultiPv()) : 1;
+        this.timeManager = timeManager;
+        this.previousBestResult = null;
+        this.principalVariation = null;
+        this.nodeBudget = player.getNodeBudget();
+        this.budgetChecks = 0;
+        this.stats = new Stats();
+        this.searchId++;
+
+        prepareTranspositionTable();
+
+        if (nodeBudget > 0) {
+            // Only a single thread searches reproducibly
+            random = new Random(player.getRandomSeed());
+            preparePool(1);
+
+            // What earlier searches learned would change this one
+            transpositionTable.clear();
+            for (Searcher s : searchers) {
+                s.clear();
+            }
+        } else {
+            random = new Random();
+            preparePool(player.getThreads());
+        }
+        this.splitRoot = pool != null && !player.isLazySmp();
+        this.splitInterior = splitRoot && player.isSplitInterior();
+
+        List<ForkJoinTask<?>> helpers = startHelpers(board, player.getMaxDepth());
+
+        try {
+            return minimaxAB(board, color, player.getMaxDepth(), stats, notificationSinkFn);
+        } finally {
+            stopHelpers(helpers);
+
+            for (Searcher s : searchers) {
+                if (s.searchId == searchId) {
+                    stats.add(s.stats);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start pondering in the background.  The opponent of the player is
+     * to move.  Pondering goes one ply deeper than the maximum depth of the
+     * player, so that the reply the engine has to search next is covered
+     * to the full depth.  It stops there or when
+     * {@link #stopPondering(ComputerPlayer)} is called.
+     *
+     * @param player the player of the engine's color.  Supplies the search
+     *               settings and the share of the CPU.
+     * @param board  the board the opponent is to move on
+     */
+    public void startPondering(ComputerPlayer player, Board board) {
+        Assert.isTrue(player.getColor() == color);
+
+        synchronized (ponderLock) {
+            stopPondering(ponderPlayer);
+
+            // The player may have pondered before
+            player.isInterrupted = false;
+
+            Board copy = new Board(board);
+            Thread thread = new Thread(() -> ponder(player, copy), "ponder-" + color);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            ponderPlayer = player;
+            ponderThread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop pondering on behalf of a player and wait until it has stopped.
+     * Does nothing if the engine is not pondering for the player.
+     *
+     * @param player the player pondering was started for
+     */
+    public void stopPondering(ComputerPlayer player) {
+        synchronized (ponderLock) {
+            if (ponderThread == null || player != ponderPlayer) {
+                return;
+            }
+
+            player.isInterrupted = true;
+
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    ponderThread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            ponderThread = null;
+            ponderPlayer = null;
+        }
+    }
+
+    /**
+     * Is the engine pondering?
+     *
+     * @return true while pondering runs
+     */
+    boolean isPondering() {
+        synchronized (ponderLock) {
+            return ponderThread != null && ponderThread.isAlive();
+        }
+    }
+
+    /**
+     * Search the position of the opponent with iterative deepening.  The
+     * values are discarded, only the entries left in the transposition
+     * table matter.
+     *
+     * @param player the player of the engine's color
+     * @param board  the board the opponent is to move on
+     */
+    private synchronized void ponder(ComputerPlayer player, Board board) {
+        this.player = player;
+        this.strategy = player.getStrategy();
+        this.aspirationWindows = player.getAspirationWindows();
+        this.endgameEmpties = player.getEndgameEmpties();
+        this.winLossDrawEmpties = player.getWinLossDrawEmpties();
+        this.probCut = player.isProbCut() ? ProbCut.forStrategy(strategy) : null;
+        this.timeManager = null;
+        this.previousBestResult = null;
+        this.nodeBudget = 0;
+        this.searchId++;
+
+        prepareTranspositionTable();
+        tablePondered = true;
+        this.splitRoot = false;
+        this.splitInterior = false;
+
+        ponderShare = player.getPonderShare() / 100.0;
+        ponderChecks = 0;
+        ponderSliceStart = System.nanoTime();
+        pondering = true;
+
+        Searcher s = acquireSearcher();
+        SearchBoard searchBoard = new SearchBoard(board);
+        long start = System.currentTimeMillis();
+        int depth = 0;
+
+        try {
+            for (int curDepth = 1; curDepth <= player.getMaxDepth() + 1 && !isInterrupted(); curDepth++) {
+                s.pvs(searchBoard, color.otherPlayer(), curDepth, -Strategy.INFINITY, Strategy.INFINITY);
+                depth = curDepth;
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } finally {
+            pondering = false;
+            releaseSearcher(s);
+        }
+
+        Log.i(TAG, String.format("Pondered to depth %d in %d ms, %d boards",
+                depth, System.currentTimeMillis() - start, s.stats.getBoardsEvaluated()));
+    }
+
+    /**
+     * Pause pondering once it has run for a while, so that it uses no more
+     * than its share of the CPU.
+     */
+    private void throttle() {
+        if (ponderShare >= 1.0) {
+            return;
+        }
+
+        long busy = System.nanoTime() - ponderSliceStart;
+        if (busy < PONDER_SLICE_NANOS) {
+            return;
+        }
+
+        long idleMs = (long) (busy * (1.0 - ponderShare) / ponderShare) / 1000000;
+        try {
+            for (long slept = 0; slept < idleMs && !player.isInterrupted; slept += PONDER_SLEEP_MS) {
+                Thread.sleep(Math.min(PONDER_SLEEP_MS, idleMs - slept));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        ponderSliceStart = System.nanoTime();
+    }
+
+    /**
+     * Get the statistics of the most recent search.
+     *
+     * @return the statistics
+     */
+    Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Make the transposition table ready for a new move.  The table is
+     * kept from earlier moves unless its size or the strategy changed:
+     * values from another strategy are meaningless.  Entries from earlier
+     * moves are aged so that they are replaced first.  Entries from
+     * pondering are not aged, they belong to the move about to be searched.
+     */
+    private void prepareTranspositionTable() {
+        int sizeLog2 = player.getTranspositionTableSizeLog2();
+
+        if (transpositionTable == null || transpositionTable.getCapacity() != (1 << sizeLog2)) {
+            transpositionTable = new TranspositionTable(sizeLog2);
+        } else if (!strategy.toString().equals(tableStrategy)) {
+            transpositionTable.clear();
+        } else if (!tablePondered) {
+            transpositionTable.nextGeneration();
+        }
+
+        tableStrategy = strategy.toString();
+        tablePondered = false;
+    }
+
+    /**
+     * Make the worker threads ready.  A single thread searches on the
+     * calling thread, without a pool.
+     *
+     * @param threads the number of threads to search with
+     */
+    private void preparePool(int threads) {
+        int parallelism = threads > 1 ? threads : 0;
+
+        if (pool != null && pool.getParallelism() == parallelism) {
+            return;
+        }
+
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+
+        if (parallelism > 0) {
+            pool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * Start the Lazy SMP helpers, if enabled.
+     *
+     * @param board the board to move on
+     * @param depth the depth of the search
+     * @return the helper tasks
+     */
+    private List<ForkJoinTask<?>> startHelpers(Board board, int depth) {
+        List<ForkJoinTask<?>> helpers = new ArrayList<>();
+
+        if (pool == null || splitRoot) {
+            return helpers;
+        }
+
+        helpersStopped = false;
+
+        for (int i = 1; i < pool.getParallelism(); i++) {
+            final int index = i;
+
+            helpers.add(pool.submit(() -> runHelper(board, index, depth)));
+        }
+
+        return helpers;
+    }
+
+    /**
+     * Run iterative deepening on a helper thread.  Every other helper is
+     * one ply ahead, so that the helpers do not all search the same
+     * positions at the same time.  The values are discarded, only the
+     * entries left in the transposition table matter.
+     *
+     * @param board the board to move on
+     * @param index the index of the helper, starting at 1
+     * @param depth the depth of the search
+     */
+    private void runHelper(Board board, int index, int depth) {
+        Searcher s = acquireSearcher();
+        SearchBoard searchBoard = new SearchBoard(board);
+
+        s.helper = true;
+
+        try {
+            for (int curDepth = 1 + index % 2; curDepth <= depth; curDepth++) {
+                s.pvs(searchBoard, color, curDepth, -Strategy.INFINITY, Strategy.INFINITY);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } finally {
+            releaseSearcher(s);
+        }
+    }
+
+    /**
+     * Stop the Lazy SMP helpers and wait for them to finish.
+     *
+     * @param helpers the helper tasks
+     */
+    private void stopHelpers(List<ForkJoinTask<?>> helpers) {
+        helpersStopped = true;
+
+        for (ForkJoinTask<?> helper : helpers) {
+            helper.join();
+        }
+    }
+
+    /**
+     * Get an idle searcher, ready for the current search.  Searchers are
+     * not tied to threads, so that threads of a discarded pool do not keep
+     * the engine alive.
+     *
+     * @return the searcher.  Must be released.
+     */
+    private Searcher acquireSearcher() {
+        Searcher s = idleSearchers.poll();
+
+        if (s == null) {
+            s = new Searcher();
+            searchers.add(s);
+        }
+
+        if (s.searchId != searchId) {
+            s.newSearch(searchId);
+        }
+        return s;
+    }
+
+    private void releaseSearcher(Searcher s) {
+        s.helper = false;
+        s.splitPoint = null;
+        idleSearchers.add(s);
+    }
+
+    /**
+     * Submit a task to the pool.  Tasks submitted by a worker go to its
+     * own queue, where the worker finds them first when it waits.
+     *
+     * @param task the task
+     */
+    private void submit(ForkJoinTask<?> task) {
+        if (ForkJoinTask.getPool() == pool) {
+            task.fork();
+        } else {
+            pool.execute(task);
+        }
+    }
+
+    /**
+     * Search a younger sibling at a split point.  Runs as a task.  If the
+     * search is abandoned, the owner of the split point finds out on its own.
+     *
+     * @param sp     the split point
+     * @param index  the index of the sibling's task
+     * @param board  a copy of the board of the split point
+     * @param player the player who's move it is
+     * @param depth  the remaining depth of the split point
+     * @param pos    linear position of the sibling's move
+     */
+    private void searchSibling(SplitPoint sp, int index, SearchBoard board, BoardValue player, int depth, int pos) {
+        if (!sp.start(index)) {
+            return;
+        }
+
+        Searcher s = acquireSearcher();
+        s.splitPoint = sp;
+
+        try {
+            int alpha = sp.alpha.get();
+
+            board.play(player, pos);
+            int score = -s.pvs(board, player.otherPlayer(), depth - 1, -alpha - 1, -alpha);
+            if (score > alpha && score < sp.beta) {
+                score = -s.pvs(board, player.otherPlayer(), depth - 1, -sp.beta, -alpha);
+            }
+
+            sp.update(score, pos);
+        } catch (InterruptedException e) {
+            // Stopped
+        } finally {
+            s.stats.incSiblingSearched();
+            releaseSearcher(s);
+            sp.finish();
+        }
+    }
+
+    /**
+     * The lower bound for the moves of the first ply.  This is the K-th
+     * best value so far, so that the best K moves get exact values.
+     * Normally, K is one.  Moves may complete concurrently.
+     */
+    private static class RootAlpha {
+        /*
+         * The best values so far, in descending order
+         */
+        private final int[] best;
+
+        RootAlpha(int alpha, int k) {
+            best = new int[k];
+            Arrays.fill(best, alpha);
+        }
+
+        synchronized int get() {
+            return best[best.length - 1];
+        }
+
+        /**
+         * Record the value of a move.
+         *
+         * @param value the value
+         */
+        synchronized void update(int value) {
+            int i = best.length - 1;
+            if (value <= best[i]) {
+                return;
+            }
+
+            for (; i > 0 && best[i - 1] < value; i--) {
+                best[i] = best[i - 1];
+            }
+            best[i] = value;
+        }
+    }
+
+    /**
+     * The younger siblings of a node that are searched in parallel.
+     */
+    private static class SplitPoint {
+        final SplitPoint parent;
+        final AtomicInteger alpha;
+        final int beta;
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        final boolean[] started;
+        volatile boolean stopped = false;
+        int value;
+        int bestMove;
+        int siblingsStarted = 0;
+        int siblingsRunning = 0;
+
+        SplitPoint(SplitPoint parent, int alpha, int beta, int value, int bestMove, int siblings) {
+            this.parent = parent;
+            this.alpha = new AtomicInteger(alpha);
+            this.beta = beta;
+            this.value = value;
+            this.bestMove = bestMove;
+            this.started = new boolean[siblings];
+        }
+
+        /**
+         * Register a sibling that is about to be searched.
+         *
+         * @param index the index of the sibling's task
+         * @return false if the split point was stopped, the sibling must not be searched
+         */
+        synchronized boolean start(int index) {
+            if (isStopped()) {
+                return false;
+            }
+
+            started[index] = true;
+            siblingsStarted++;
+            siblingsRunning++;
+            return true;
+        }
+
+        /**
+         * Register the end of a sibling's search.
+         */
+        synchronized void finish() {
+            if (--siblingsRunning == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait until no sibling is searched any more.  Cancelled tasks
+         * complete at once, even if they were already running.
+         */
+        synchronized void awaitSiblings() {
+            boolean interrupted = false;
+
+            while (siblingsRunning > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Record the value of a sibling.  On a cutoff, cancel the
+         * siblings that have not started.  The running ones stop on their
+         * own once they find the split point stopped.
+         *
+         * @param score the value of the sibling
+         * @param pos   linear position of the sibling's move
+         */
+        synchronized void update(int score, int pos) {
+            if (score > value) {
+                value = score;
+                bestMove = pos;
+            }
+            alpha.accumulateAndGet(score, Math::max);
+
+            if (score >= beta && !stopped) {
+                stopped = true;
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (!started[i]) {
+                        tasks.get(i).cancel(false);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Determine whether this or an enclosing split point was stopped.
+         *
+         * @return true if the work of the split point has become useless
+         */
+        boolean isStopped() {
+            for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+                if (sp.stopped) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private boolean isInterrupted() {
+        if (pondering && (++ponderChecks & PONDER_CHECK_MASK) == 0) {
+            throttle();
+        }
+        if (nodeBudget > 0 && (++budgetChecks & BUDGET_CHECK_MASK) == 0 && boardsEvaluated() >= nodeBudget) {
+            Log.i(TAG, "Node budget spent");
+            player.isInterrupted = true;
+        }
+        return player.isInterrupted;
+    }
+
+    /**
+     * Recursively build game tree.  Find the move that leads to the
+     * strongest board for the player.  Utilize principal variation
+     * search to narrow search.
+     * <p>
+     * This is specialized implementation for the first ply.
+     *
+     * @param board  the board to evaluate
+     * @param player the player who's move it is
+     * @param depth  the current recursion depth (in half-moves)
+     * @param stats  performance statistics
+     * @return the value of board
+     */
+    private MiniMaxResult minimaxAB(
+            Board board,
+            BoardValue player,
+            int depth,
+            Stats stats,
+            Consumer<GameNotification> notificationSinkFn) {
+        final PriorityQueue<MiniMaxResult> candidates = new PriorityQueue<>();
+        final PriorityQueue<MiniMaxResult> results = new PriorityQueue<>();
+
+        for (long moves = board.getValidMoves(player); moves != 0; moves &= moves - 1) {
+            candidates.add(new MiniMaxResult(0, new Position(Long.numberOfTrailingZeros(moves))));
+        }
+
+        notificationSinkFn.accept(
+                new EngineNotification(stats.boardsEvaluated, stats.duration(), 0));
+
+        int empties = Board.BOARD_LSIZE - board.getNumPieces();
+
+        /*
+         * Build game tree of increasing depths.  Use results of one iteration to
+         * hint better candidates to the subsequent iteration.  alpha-beta pruning
+         * benefits greatly from discovering the best solution early.
+         */
+
+        for (int curDepth = 1; curDepth <= depth && !isInterrupted(); curDepth++) {
+            if (timeManager != null && !timeManager.startIteration(curDepth, empties)) {
+                break;
+            }
+
+            // The window of the current attempt, to judge its results if interrupted
+            int windowAlpha = -Strategy.INFINITY;
+            int windowBeta = Strategy.INFINITY;
+
+            try {
+                final int iterationDepth = curDepth;
+                long iterationStart = stats.duration();
+                int guess = candidates.peek().getValue();
+                // The window would be around the best move only
+                boolean aspire = curDepth > 1 && multiPv == 1 && Math.abs(guess) < Strategy.WIN_BASE;
+                int lowIndex = 0;
+                int highIndex = 0;
+
+                if (aspire) {
+                    stats.incAspirationSearch();
+                }
+
+                /*
+                 * Search a window around the value of the previous iteration.
+                 * Widen the side that fails until the value falls within.
+                 */
+                for (; ; ) {
+                    int alpha = aspire ? aspirationBound(guess, lowIndex, -1) : -Strategy.INFINITY;
+                    int beta = aspire ? aspirationBound(guess, highIndex, 1) : Strategy.INFINITY;
+                    windowAlpha = alpha;
+                    windowBeta = beta;
+
+                    searchRoot(board, player, curDepth, alpha, beta, true, candidates, results,
+                            (s, b, p, a, bt) -> -s.pvs(b, p.otherPlayer(), iterationDepth - 1, -bt, -a),
+                            IntUnaryOperator.identity(),
+                            notificationSinkFn);
+
+                    int best = results.peek().getValue();
+                    if (best <= alpha && alpha > -Strategy.INFINITY) {
+                        stats.incAspirationFailLow();
+                        lowIndex++;
+                    } else if (best >= beta && beta < Strategy.INFINITY) {
+                        stats.incAspirationFailHigh();
+                        highIndex++;
+                    } else {
+                        break;
+                    }
+                }
+
+                Log.i(TAG, String.format("Depth %d searched in %d ms, %d aspiration re-searches",
+                        curDepth, stats.duration() - iterationStart, lowIndex + highIndex));
+
+                if (timeManager != null) {
+                    timeManager.endIteration(curDepth, results.peek().getPosition());
+                }
+
+                if (multiPv > 1) {
+                    sendMultiPv(notificationSinkFn, results);
+                }
+
+                sendBestMove(notificationSinkFn, board, results.peek());
+                sendPrincipalVariation(notificationSinkFn, board, player, results.peek(), curDepth);
+
+                Log.i(TAG, String.format("Predicted best move: %s, found %s at depth %d",
+                        candidates.peek(), results.peek(), curDepth));
+                Log.i(TAG, String.format("Predicted best move at position %d of %d",
+                        new Callable<Integer>() {
+                            @Override
+                            public Integer call() {
+                                int ordinal = 1;
+                                Position target = candidates.peek().getPosition();
+                                for (MiniMaxResult res : results) {
+                                    if (res.getPosition().equals(target)) {
+                                        return ordinal;
+                                    }
+                                    ++ordinal;
+                                }
+
+                                return -1;
+                            }
+                        }.call(),
+                        results.size()));
+
+                if (results.size() <= 1)
+                    break;
+
+                candidates.clear();
+                candidates.addAll(results);
+            } catch (InterruptedException e) {
+                Log.w(TAG, e.getMessage());
+                return partialResultOf(candidates, results, windowAlpha, windowBeta);
+            }
+        }
+
+        /*
+         * Close to the end of the game, replace the heuristic values by
+         * exact ones, or a little earlier, by win/loss/draw.  The heuristic
+         * search still provides the move order and, should time run out,
+         * the move.
+         */
+        boolean exact = empties <= endgameEmpties;
+
+        if ((exact || empties <= winLossDrawEmpties) && results.size() > 1 && !isInterrupted()) {
+            try {
+                if (exact) {
+                    searchRoot(board, player, empties,
+                            -EndgameSolver.MAX_DIFFERENTIAL - 1, EndgameSolver.MAX_DIFFERENTIAL + 1, true,
+                            candidates, results, Searcher::solveMove, Strategy::fromDiscDifferential,
+                            notificationSinkFn);
+                } else {
+                    // Nothing beats a win, so the remaining moves are skipped once one is found
+                    searchRoot(board, player, empties,
+                            -EndgameSolver.MAX_DIFFERENTIAL - 1, 1, false,
+                            candidates, results, Searcher::solveMoveWinLossDraw, Strategy::fromWinLossDraw,
+                            notificationSinkFn);
+                }
+
+                // The solver keeps its own table, so there is no line to report
+                sendBestMove(notificationSinkFn, board, results.peek());
+
+                Log.i(TAG, String.format("Solved %d empties%s: %s",
+                        empties, exact ? "" : " for win/loss/draw", results.peek()));
+            } catch (InterruptedException e) {
+                Log.w(TAG, e.getMessage());
+                // The solves do not fail low: the first move is solved with the full window
+                return partialResultOf(candidates, results, -Strategy.INFINITY, Strategy.INFINITY);
+            }
+        }
+
+        // We should be assured at least one valid move
+        Assert.isTrue(!results.isEmpty());
+
+        return bestResultOf(results);
+    }
+
+    /**
+     * Determines the value of a move at the first ply.
+     */
+    private interface RootEvaluator {
+        /**
+         * Evaluate a move.
+         *
+         * @param searcher the searcher of the current task
+         * @param board    the board after the move
+         * @param player   the player who made the move
+         * @param alpha    the lower bound of the window
+         * @param beta     the upper bound of the window
+         * @return the value of the move for the player
+         * @throws InterruptedException if the search was interrupted
+         */
+        int evaluate(Searcher searcher, SearchBoard board, BoardValue player, int alpha, int beta)
+                throws InterruptedException;
+    }
+
+    /**
+     * Search the moves of the first ply within a window.  Once a move
+     * fails high, moves that have not been started are skipped.
+     * <p>
+     * The first move is searched with the full window.  The remaining
+     * moves are tested with a null window and re-searched if they might
+     * be better.  Moves that tie with the best are re-searched as well,
+     * so that their values are exact.  Without null windows, each move
+     * is searched with the full window.  In Multi-PV mode, moves are
+     * tested against the K-th best value instead of the best.
+     * </p>
+     *
+     * @param board              the board to move on
+     * @param player             the player who's move it is
+     * @param depth              the depth reported in notifications
+     * @param alpha              the lower bound of the window
+     * @param beta               the upper bound of the window
+     * @param nullWindows        whether to test moves after the first with null windows
+     * @param candidates         the moves, best candidate first
+     * @param results            receives the value of each move searched
+     * @param evaluator          determines the value of a move
+     * @param toValue            translates the evaluator's values into result values
+     * @param notificationSinkFn receives progress and analysis notifications
+     * @throws InterruptedException if the search was interrupted
+     */
+    private void searchRoot(
+            Board board,
+            BoardValue player,
+            int depth,
+            int alpha,
+            int beta,
+            boolean nullWindows,
+            PriorityQueue<MiniMaxResult> candidates,
+            PriorityQueue<MiniMaxResult> results,
+            RootEvaluator evaluator,
+            IntUnaryOperator toValue,
+            Consumer<GameNotification> notificationSinkFn) throws InterruptedException {
+
+        results.clear();
+
+        // The iteration order of a priority queue is unspecified
+        MiniMaxResult[] orderedCandidates = candidates.toArray(new MiniMaxResult[candidates.size()]);
+        Arrays.sort(orderedCandidates);
+
+        if (orderedCandidates.length == 1) {
+            // Optimization.  There is only one move.
+            addRootResult(new MiniMaxResult(0, orderedCandidates[0].getPosition()), results, depth, notificationSinkFn);
+            return;
+        }
+
+        RootAlpha sharedAlpha = new RootAlpha(alpha, multiPv);
+
+        searchRootMove(board, player, orderedCandidates[0].getPosition(), depth, beta, false,
+                sharedAlpha, results, evaluator, toValue, notificationSinkFn);
+
+        if (!splitRoot) {
+            for (int i = 1; i < orderedCandidates.length; i++) {
+                searchRootMove(board, player, orderedCandidates[i].getPosition(), depth, beta, nullWindows,
+                        sharedAlpha, results, evaluator, toValue, notificationSinkFn);
+            }
+        } else {
+            AtomicReference<InterruptedException> interruption = new AtomicReference<>();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+            for (int i = 1; i < orderedCandidates.length; i++) {
+                Position position = orderedCandidates[i].getPosition();
+
+                tasks.add(pool.submit(() -> {
+                    try {
+                        searchRootMove(board, player, position, depth, beta, nullWindows,
+                                sharedAlpha, results, evaluator, toValue, notificationSinkFn);
+                    } catch (InterruptedException e) {
+                        interruption.set(e);
+                    }
+                }));
+            }
+
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            if (interruption.get() != null) {
+                throw interruption.get();
+            }
+        }
+    }
+
+    /**
+     * Search a move of the first ply.  May be called concurrently.
+     *
+     * @param board              the board to move on.  Not modified.
+     * @param player             the player who's move it is
+     * @param position           the move
+     * @param depth              the depth reported in notifications
+     * @param beta               the upper bound of the window
+     * @param nullWindow         whether to test the move with a null window first
+     * @param sharedAlpha        the lower bound of the window, raised as moves complete
+     * @param results            receives the value of the move
+     * @param evaluator          determines the value of the move
+     * @param toValue            translates the evaluator's value into a result value
+     * @param notificationSinkFn receives progress and analysis notifications
+     * @throws InterruptedException if the search was interrupted
+     */
+    private void searchRootMove(
+            Board board,
+            BoardValue player,
+            Position position,
+            int depth,
+            int beta,
+            boolean nullWindow,
+            RootAlpha sharedAlpha,
+            PriorityQueue<MiniMaxResult> results,
+            RootEvaluator evaluator,
+            IntUnaryOperator toValue,
+            Consumer<GameNotification> notificationSinkFn) throws InterruptedException {
+        int alpha = sharedAlpha.get();
+
+        if (alpha >= beta) {
+            return;
+        }
+
+        Searcher searcher = acquireSearcher();
+        SearchBoard searchBoard = new SearchBoard(board);
+        int value;
+
+        try {
+            searchBoard.play(player, position.getLinear());
+            if (nullWindow) {
+                // Moves that tie with the best must be exact, so test for >= alpha
+                value = evaluator.evaluate(searcher, searchBoard, player, alpha - 1, alpha);
+                if (value >= alpha && value < beta) {
+                    value = evaluator.evaluate(searcher, searchBoard, player, alpha - 1, beta);
+                }
+            } else {
+                value = evaluator.evaluate(searcher, searchBoard, player, alpha, beta);
+            }
+        } finally {
+            releaseSearcher(searcher);
+        }
+
+        sharedAlpha.update(value);
+
+        addRootResult(new MiniMaxResult(toValue.applyAsInt(value), position), results, depth, notificationSinkFn);
+    }
+
+    /**
+     * Record the value of a move of the first ply and notify.  May be
+     * called concurrently.
+     */
+    private void addRootResult(
+            MiniMaxResult result,
+            PriorityQueue<MiniMaxResult> results,
+            int depth,
+            Consumer<GameNotification> notificationSinkFn) {
+
+        synchronized (results) {
+            results.add(result);
+
+            sendAnalysis(notificationSinkFn, result, results.peek());
+
+            notificationSinkFn.accept(
+                    new EngineNotification(boardsEvaluated(), stats.duration(), depth));
+        }
+    }
+
+    /**
+     * Get the number of boards evaluated so far by all threads.  The
+     * count is approximate while the search is running.
+     *
+     * @return number of boards
+     */
+    private int boardsEvaluated() {
+        int boards = stats.getBoardsEvaluated();
+
+        for (Searcher s : searchers) {
+            if (s.searchId == searchId) {
+                boards += s.boardsEvaluated();
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Determine a bound of the aspiration window.
+     *
+     * @param guess the expected value
+     * @param index the number of times this side of the window failed
+     * @param sign  -1 for the lower bound, 1 for the upper bound
+     * @return the bound
+     */
+    private int aspirationBound(int guess, int index, int sign) {
+        return index < aspirationWindows.length
+                ? guess + sign * aspirationWindows[index]
+                : sign * Strategy.INFINITY;
+    }
+
+    private void sendBestMove(Consumer<GameNotification> notificationSinkFn, Board board, MiniMaxResult best) {
+
+        Board newBoard = (Board) board.clone();
+        newBoard.setBoardValue(best.getPosition(), BoardValue.BEST_MOVE);
+
+        notificationSinkFn.accept(
+                new AnalysisBoardNotification(best.getValue(), best.getPosition(), true, newBoard));
+    }
+
+    /**
+     * Send the exact values of the best moves in Multi-PV mode.
+     *
+     * @param notificationSinkFn receives the notifications
+     * @param results            the results of a completed iteration
+     */
+    private void sendMultiPv(Consumer<GameNotification> notificationSinkFn, PriorityQueue<MiniMaxResult> results) {
+        MiniMaxResult[] ordered = results.toArray(new MiniMaxResult[results.size()]);
+        Arrays.sort(ordered);
+
+        for (int i = Math.min(multiPv, ordered.length) - 1; i >= 0; i--) {
+            notificationSinkFn.accept(
+                    new AnalysisValueNotification(ordered[i].getValue(), ordered[i].getPosition(), i == 0));
+        }
+    }
+
+    /**
+     * Determine the principal variation of a completed iteration, keep it
+     * for the next iteration and send it.
+     *
+     * @param notificationSinkFn receives the notification
+     * @param board              the board to move on
+     * @param player             the player who's move it is
+     * @param best               the best move of the iteration
+     * @param depth              the depth of the iteration
+     */
+    private void sendPrincipalVariation(
+            Consumer<GameNotification> notificationSinkFn,
+            Board board,
+            BoardValue player,
+            MiniMaxResult best,
+            int depth) {
+        principalVariation = principalVariationOf(board, player, best.getPosition(), depth);
+
+        Log.i(TAG, String.format("Principal variation at depth %d: %s", depth, principalVariation.getLine()));
+        notificationSinkFn.accept(new PrincipalVariationNotification(depth, principalVariation.getLine()));
+    }
+
+    /**
+     * Follow the best moves stored in the transposition table from a move
+     * of the first ply.  The line ends at the search horizon, at the end
+     * of the game, or where the table has no entry searched deep enough.
+     * Passes are not part of the line.
+     *
+     * @param board  the board to move on
+     * @param player the player who's move it is
+     * @param best   the best move
+     * @param depth  the depth of the search
+     * @return the principal variation
+     */
+    PrincipalVariation principalVariationOf(Board board, BoardValue player, Position best, int depth) {
+        SearchBoard searchBoard = new SearchBoard(board);
+        List<Long> keys = new ArrayList<>();
+        List<Move> line = new ArrayList<>();
+        int pos = best.getLinear();
+
+        for (int remaining = depth; pos != TranspositionTable.NO_MOVE; remaining--) {
+            keys.add(searchBoard.getHashKey(player));
+            line.add(new Move(player, new Position(pos)));
+            searchBoard.play(player, pos);
+
+            pos = TranspositionTable.NO_MOVE;
+            player = player.otherPlayer();
+            if (!searchBoard.hasValidMove(player)) {
+                player = player.otherPlayer();
+            }
+
+            if (remaining > 1 && searchBoard.hasValidMove(player)) {
+                long entry = transpositionTable.get(searchBoard.getHashKey(player));
+
+                if (entry != TranspositionTable.MISS && TranspositionTable.depthOf(entry) >= remaining - 1) {
+                    int move = TranspositionTable.bestMoveOf(entry);
+
+                    if (move != TranspositionTable.NO_MOVE && (searchBoard.getValidMoves(player) & (1L << move)) != 0) {
+                        pos = move;
+                    }
+                }
+            }
+        }
+
+        return new PrincipalVariation(keys, line);
+    }
+
+    private void sendAnalysis(
+            Consumer<GameNotification> notificationSinkFn,
+            MiniMaxResult lastResult,
+            MiniMaxResult bestResult) {
+
+        if (previousBestResult != null && previousBestResult.getPosition() != bestResult.getPosition()) {
+            notificationSinkFn.accept(
+                    new AnalysisValueNotification(previousBestResult.getValue(), previousBestResult.getPosition(), false));
+        }
+
+        if (bestResult.getPosition() != lastResult.getPosition()) {
+            notificationSinkFn.accept(
+                    new AnalysisValueNotification(lastResult.getValue(), lastResult.getPosition(), false));
+        }
+
+        notificationSinkFn.accept(
+                new AnalysisValueNotification(bestResult.getValue(), bestResult.getPosition(), true));
+        previousBestResult = bestResult;
+
+    }
+
+    /**
+     * Choose a move after an iteration was interrupted.  The moves that
+     * completed in the interrupted iteration were searched deeper than the
+     * candidates, so they are preferred.
+     *
+     * @param candidates the results of the previous iteration
+     * @param results    the moves completed in the interrupted iteration
+     * @param alpha      the lower bound of the window of the interrupted attempt
+     * @param beta       the upper bound of the window of the interrupted attempt
+     * @return the best move
+     */
+    private MiniMaxResult partialResultOf(
+            PriorityQueue<MiniMaxResult> candidates,
+            PriorityQueue<MiniMaxResult> results,
+            int alpha,
+            int beta) {
+        MiniMaxResult[] orderedCandidates = candidates.toArray(new MiniMaxResult[candidates.size()]);
+        Arrays.sort(orderedCandidates);
+
+        MiniMaxResult result = partialResultOf(orderedCandidates[0].getPosition(), results, alpha, beta);
+
+        if (result == null) {
+            return bestResultOf(candidates);
+        }
+
+        Log.i(TAG, String.format("Using %s from %d of %d moves of the interrupted iteration",
+                result, results.size(), candidates.size()));
+        return result;
+    }
+
+    /**
+     * Choose a move from a partially completed iteration.  The first move
+     * searched, i.e., the previous best, is kept unless a completed move
+     * beats it.  This requires the value of the first move to be exact,
+     * i.e., within the window.  Values of later moves that did not beat
+     * the first are upper bounds, so a move that beats the first move is
+     * truly better.  If the first move failed low or high, its value is a
+     * bound as well and bounds cannot be compared.
+     *
+     * @param first   the move searched first
+     * @param results the moves completed
+     * @param alpha   the lower bound of the window the moves were searched with
+     * @param beta    the upper bound of the window the moves were searched with
+     * @return the best move with its deeper value, or null if the first move
+     * did not complete or its value is not exact
+     */
+    static MiniMaxResult partialResultOf(Position first, Iterable<MiniMaxResult> results, int alpha, int beta) {
+        MiniMaxResult firstResult = null;
+        MiniMaxResult best = null;
+
+        for (MiniMaxResult result : results) {
+            if (result.getPosition().equals(first)) {
+                firstResult = result;
+            }
+            if (best == null || result.getValue() > best.getValue()) {
+                best = result;
+            }
+        }
+
+        if (firstResult == null || firstResult.getValue() <= alpha || firstResult.getValue() >= beta) {
+            return null;
+        }
+
+        return best.getValue() > firstResult.getValue() ? best : firstResult;
+    }
+
+    /**
+     * Applies a little entropy to homogeneous results.
+     *
+     * @param results candidate results
+     * @return "best" result
+     */
+    private MiniMaxResult bestResultOf(Iterable<MiniMaxResult> results) {
+        return bestResultOf(results, random);
+    }
+
+    /**
+     * Choose one of the best results at random.  Each result tied for the
+     * best value is equally likely.
+     *
+     * @param results candidate results, in any order
+     * @param random  breaks ties
+     * @return "best" result
+     */
+    static MiniMaxResult bestResultOf(Iterable<MiniMaxResult> results, Random random) {
+        MiniMaxResult best = null;
+        int ties = 0;
+
+        for (MiniMaxResult result : results) {
+            if (best == null || result.value > best.value) {
+                best = result;
+                ties = 1;
+            } else if (best.value == result.value) {
+                // Keep the n-th tie with probability 1/n
+                if (random.nextInt(++ties) == 0) {
+                    Log.i(TAG, "Updated result to " + result);
+                    best = result;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * The line of play expected by an iteration.  Each move is kept with
+     * the hash of the position it is played in, so that a node of the next
+     * iteration is recognized as part of the line by its ply and hash.
+     */
+    static class PrincipalVariation {
+        private final long[] keys;
+        private final List<Move> line;
+
+        PrincipalVariation(List<Long> keys, List<Move> line) {
+            this.keys = new long[keys.size()];
+            for (int i = 0; i < this.keys.length; i++) {
+                this.keys[i] = keys.get(i);
+            }
+            this.line = Collections.unmodifiableList(line);
+        }
+
+        /**
+         * Get the move of the line at a node.
+         *
+         * @param ply  the distance of the node from the first ply
+         * @param key  the hash of the node
+         * @param move the move to use if the node is not part of the line
+         * @return the move of the line, or the given move
+         */
+        int moveAt(int ply, long key, int move) {
+            return ply < keys.length && keys[ply] == key ? line.get(ply).getPosition().getLinear() : move;
+        }
+
+        List<Move> getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * The state of a search thread.  A searcher is used by one thread at a time.
+     */
+    class Searcher {
+        private final MoveOrdering moveOrdering = new MoveOrdering();
+        private final EndgameSolver endgameSolver = new EndgameSolver(this::isInterrupted);
+        private Stats stats = new Stats();
+        private volatile long solvedNodes = 0;
+        private volatile int searchId = -1;
+        private boolean helper;
+        private SplitPoint splitPoint;
+
+        /**
+         * Prepare for a new search.
+         *
+         * @param searchId identifies the search
+         */
+        void newSearch(int searchId) {
+            moveOrdering.newSearch();
+            stats = new Stats();
+            solvedNodes = endgameSolver.getNodes();
+            helper = false;
+            this.searchId = searchId;
+        }
+
+        /**
+         * Forget the move ordering and endgame positions learned in
+         * earlier searches.
+         */
+        void clear() {
+            moveOrdering.clear();
+            endgameSolver.clear();
+        }
+
+        /**
+         * Determine whether this searcher has to stop.  Helpers stop once
+         * the search they help is done.
+         *
+         * @return true if the search must be abandoned
+         */
+        boolean isInterrupted() {
+            return SearchEngine.this.isInterrupted()
+                    || (helper && helpersStopped)
+                    || (splitPoint != null && splitPoint.isStopped());
+        }
+
+        /**
+         * Get the number of boards evaluated in the current search,
+         * including those of a solve in progress.
+         *
+         * @return number of boards
+         */
+        int boardsEvaluated() {
+            return stats.getBoardsEvaluated() + (int) (endgameSolver.getNodes() - solvedNodes);
+        }
+
+        /**
+         * Solve the position after a move exactly.
+         *
+         * @param board  the board after the move
+         * @param player the player who made the move
+         * @param alpha  the lower bound of the window
+         * @param beta   the upper bound of the window
+         * @return the final disc differential for the player
+         */
+        int solveMove(SearchBoard board, BoardValue player, int alpha, int beta) throws InterruptedException {
+            long startCutoffs = endgameSolver.getStabilityCutoffs();
+
+            try {
+                return -endgameSolver.solve(board, player.otherPlayer(), -beta, -alpha);
+            } finally {
+                long nodes = endgameSolver.getNodes();
+                stats.addBoards(nodes - solvedNodes);
+                solvedNodes = nodes;
+                stats.addStabilityCutoffs(endgameSolver.getStabilityCutoffs() - startCutoffs);
+            }
+        }
+
+        /**
+         * Solve the position after a move for win, loss or draw.  The
+         * window is ignored.
+         *
+         * @param board  the board after the move
+         * @param player the player who made the move
+         * @param alpha  ignored
+         * @param beta   ignored
+         * @return the final disc differential for the player, or a bound of it
+         * with the same sign
+         */
+        int solveMoveWinLossDraw(SearchBoard board, BoardValue player, int alpha, int beta) throws InterruptedException {
+            return solveMove(board, player, -1, 1);
+        }
+
+        /**
+         * Recursively build game tree using principal variation search, a
+         * negamax formulation of alpha-beta.  The first move is searched with
+         * the full window.  The remaining moves are only tested against the
+         * best value found so far using a null window, and re-searched when
+         * the test shows that they are better.
+         * <p>
+         * Values are from the perspective of the player to move.
+         * </p>
+         *
+         * @param board  the board to evaluate.  Moves are played and undone in place.
+         * @param player the player who's move it is
+         * @param depth  the remaining depth (in half-moves)
+         * @param alpha  the lower bound of the window
+         * @param beta   the upper bound of the window
+         * @return the value of board
+         */
+        int pvs(
+                SearchBoard board,
+                BoardValue player,
+                int depth,
+                int alpha,
+                int beta) throws InterruptedException {
+            int origAlpha = alpha;
+            int origBeta = beta;
+
+            if (isInterrupted()) {
+                throw new InterruptedException("out of time");
+            }
+
+            long key = board.getHashKey(player);
+            long ttEntry = transpositionTable.get(key);
+            stats.incCacheProbe(ttEntry != TranspositionTable.MISS);
+            if (ttEntry != TranspositionTable.MISS && TranspositionTable.depthOf(ttEntry) >= depth) {
+                int ttValue = TranspositionTable.valueOf(ttEntry);
+
+                switch (TranspositionTable.flagOf(ttEntry)) {
+                    case EXACT:
+                        stats.incCacheHit();
+                        return ttValue;
+                    case LOWERBOUND:
+                        alpha = Math.max(alpha, ttValue);
+                        break;
+                    case UPPERBOUND:
+                        beta = Math.min(beta, ttValue);
+                        break;
+                }
+                if (beta <= alpha) {
+                    //Log.d(TAG, "Cache prune");
+                    stats.incCacheHit();
+                    return ttValue;
+                }
+            }
+
+            if (depth >= ETC_DEPTH) {
+                // Enhanced transposition cutoff.  If the table already shows a move
+                // that fails high, the node needs no search.
+                for (long etcMoves = board.getValidMoves(player); etcMoves != 0; etcMoves &= etcMoves - 1) {
+                    int pos = Long.numberOfTrailingZeros(etcMoves);
+
+                    board.play(player, pos);
+                    long childEntry = transpositionTable.get(board.getHashKey(player.otherPlayer()));
+                    board.undo();
+
+                    if (childEntry != TranspositionTable.MISS
+                            && TranspositionTable.depthOf(childEntry) >= depth - 1
+                            && TranspositionTable.flagOf(childEntry) != TranspositionTable.Flag.LOWERBOUND
+                            && -TranspositionTable.valueOf(childEntry) >= beta) {
+                        stats.incEtcCutoff();
+                        return -TranspositionTable.valueOf(childEntry);
+                    }
+                }
+            }
+
+            if (probCut != null && depth >= ProbCut.MIN_DEPTH) {
+                int empties = Board.BOARD_LSIZE - board.getNumPieces();
+
+                // Predict the outcome of this search from shallow searches
+                for (ProbCut.Cut cut : probCut.cutsFor(depth, empties)) {
+                    int shallowDepth = cut.shallowDepth(depth);
+
+                    if (beta < PROBCUT_LIMIT) {
+                        int bound = cut.highBound(beta);
+                        if (bound < PROBCUT_LIMIT && pvs(board, player, shallowDepth, bound - 1, bound) >= bound) {
+                            stats.incProbCut();
+                            return beta;
+                        }
+                    }
+
+                    if (alpha > -PROBCUT_LIMIT) {
+                        int bound = cut.lowBound(alpha);
+                        if (bound > -PROBCUT_LIMIT && pvs(board, player, shallowDepth, bound, bound + 1) <= bound) {
+                            stats.incProbCut();
+                            return alpha;
+                        }
+                    }
+                }
+            }
+
+            if (depth <= 0) {
+                stats.incBoard();
+                return perspective(player, strategy.determineBoardValue(color, board));
+            }
+
+            int bestMove = TranspositionTable.NO_MOVE;
+            int value = -Strategy.INFINITY;
+            long moves = board.getValidMoves(player);
+
+            if (moves == 0) {
+                // player has to pass ...
+
+                if (board.hasValidMove(player.otherPlayer())) {
+                    value = -pvs(board, player.otherPlayer(), depth, -beta, -alpha);
+                } else {
+                    // neither player has a valid move.  return the score
+                    value = perspective(player, strategy.determineFinalScore(color, board));
+                }
+            }
+
+            int ply = board.getPly();
+            int numMoves = Long.bitCount(moves);
+            int hashMove = ttEntry != TranspositionTable.MISS ? TranspositionTable.bestMoveOf(ttEntry) : TranspositionTable.NO_MOVE;
+            PrincipalVariation pv = principalVariation;
+            if (pv != null) {
+                // On the line of the previous iteration, its move comes first
+                hashMove = pv.moveAt(ply, key, hashMove);
+            }
+            int[] orderedMoves = moveOrdering.order(moves, player, ply, hashMove);
+
+            for (int i = 0; i < numMoves; i++) {
+                int pos = orderedMoves[i];
+                int score;
+
+                if (i == 1 && splitInterior && depth >= SPLIT_DEPTH && numMoves > 2) {
+                    // The eldest brother has been searched, the young brothers no longer have to wait
+                    SplitPoint sp = split(board, player, depth, alpha, beta,
+                            Arrays.copyOfRange(orderedMoves, 1, numMoves), value, bestMove);
+
+                    value = sp.value;
+                    bestMove = sp.bestMove;
+                    if (value >= beta) {
+                        stats.incCutoff(false);
+                        moveOrdering.cutoff(player, ply, bestMove, depth);
+                    }
+                    break;
+                }
+
+                board.play(player, pos);
+                if (bestMove == TranspositionTable.NO_MOVE) {
+                    score = -pvs(board, player.otherPlayer(), depth - 1, -beta, -alpha);
+                } else {
+                    score = -pvs(board, player.otherPlayer(), depth - 1, -alpha - 1, -alpha);
+                    if (score > alpha && score < beta) {
+                        score = -pvs(board, player.otherPlayer(), depth - 1, -beta, -alpha);
+                    }
+                }
+                board.undo();
+
+                if (score > value || bestMove == TranspositionTable.NO_MOVE) {
+                    value = score;
+                    bestMove = pos;
+                }
+                alpha = Math.max(value, alpha);
+                if (beta <= alpha) {
+                    stats.incCutoff(i == 0);
+                    moveOrdering.cutoff(player, ply, pos, depth);
+                    break;
+                }
+            }
+
+            TranspositionTable.Flag flag;
+            if (value <= origAlpha) {
+                flag = TranspositionTable.Flag.UPPERBOUND;
+            } else if (value >= origBeta) {
+                flag = TranspositionTable.Flag.LOWERBOUND;
+            } else {
+                flag = TranspositionTable.Flag.EXACT;
+            }
+            transpositionTable.put(key, value, depth, flag, bestMove);
+
+            return value;
+        }
+
+        /**
+         * Search the younger siblings of a node in parallel and wait for
+         * them to finish.  Helps with other tasks while waiting.
+         *
+         * @param board    the board of the node
+         * @param player   the player who's move it is
+         * @param depth    the remaining depth of the node
+         * @param alpha    the lower bound of the window, raised by the eldest sibling
+         * @param beta     the upper bound of the window
+         * @param moves    the moves of the younger siblings
+         * @param value    the value of the eldest sibling
+         * @param bestMove the move of the eldest sibling
+         * @return the split point, holding the best value and move
+         * @throws InterruptedException if the search was interrupted
+         */
+        private SplitPoint split(
+                SearchBoard board,
+                BoardValue player,
+                int depth,
+                int alpha,
+                int beta,
+                int[] moves,
+                int value,
+                int bestMove) throws InterruptedException {
+            SplitPoint sp = new SplitPoint(splitPoint, alpha, beta, value, bestMove, moves.length);
+
+            synchronized (sp) {
+                for (int i = 0; i < moves.length; i++) {
+                    SearchBoard siblingBoard = new SearchBoard(board);
+                    int index = i;
+                    int pos = moves[i];
+
+                    sp.tasks.add(ForkJoinTask.adapt(() -> searchSibling(sp, index, siblingBoard, player, depth, pos)));
+                }
+            }
+
+            for (ForkJoinTask<?> task : sp.tasks) {
+                submit(task);
+            }
+
+            for (ForkJoinTask<?> task : sp.tasks) {
+                task.quietlyJoin();
+                if (task.isCompletedAbnormally() && !task.isCancelled()) {
+                    throw new IllegalStateException("Sibling search failed", task.getException());
+                }
+            }
+
+            // The siblings must not update the split point once it is returned
+            sp.awaitSiblings();
+            stats.incSplit(sp.stopped, sp.siblingsStarted);
+
+            if (isInterrupted()) {
+                throw new InterruptedException("out of time");
+            }
+
+            return sp;
+        }
+
+        /**
+         * Strategies value boards for the engine's color.  Convert such a
+         * value to the perspective of the player to move.
+         *
+         * @param player the player to move
+         * @param value  value for the engine's color
+         * @return value for the player to move
+         */
+        private int perspective(BoardValue player, int value) {
+            return player == color ? value : -value;
+        }
+    }
+
+    @AllArgsConstructor
+    @Data
+    static class MiniMaxResult implements Comparable<MiniMaxResult> {
+
+        private int value;
+        private Position position;
+
+        /**
+         * Compares this object to the specified object to determine their relative
+         * order.
+         * <p>
+         * Natural sort order is highest value results first.
+         *
+         * @param another the object to compare to this instance.
+         * @return a negative integer if this instance is less than {@code another};
+         * a positive integer if this instance is greater than
+         * {@code another}; 0 if this instance has the same order as
+         * {@code another}.
+         * @throws ClassCastException if {@code another} cannot be converted into something
+         *                            comparable to {@code this} instance.
+         */
+        @Override
+        public int compareTo(@NonNull MiniMaxResult another) {
+            return Integer.compare(another.value, this.value);
+        }
+    }
+
+    /**
+     * Helper for performance statistics.  Thread-safe.
+     private class Stats
+     {
+     private long start = System.currentTimeMillis();
+     private AtomicInteger boardsEvaluated = new AtomicInteger( 0 );
+
+     public void incBoard()
+     {
+     boardsEvaluated.getAndIncrement();
+     }
+
+     public int getBoardsEvaluated()
+     {
+     return boardsEvaluated.get();
+     }
+
+     public long duration()
+     {
+     return System.currentTimeMillis() - start;
+     }
+     }
+     */
+
+
+    /**
+     * Helper for performance statistics.  Not thread-safe.
+     */
+    static class Stats {
+        private long start = System.currentTimeMillis();
+        private int boardsEvaluated = 0;
+        private int cacheHits = 0;
+        private int cacheProbes = 0;
+        private int cacheFound = 0;
+        private int cutoffs = 0;
+        private int firstMoveCutoffs = 0;
+        private int aspirationSearches = 0;
+        private int aspirationFailLow = 0;
+        private int aspirationFailHigh = 0;
+        private int probCuts = 0;
+        private int etcCutoffs = 0;
+        private long stabilityCutoffs = 0;
+        private int splits = 0;
+        private int splitCutoffs = 0;
+        private int siblingsStarted = 0;
+        private int siblingsSearched = 0;
+
+        public void incBoard() {
+            boardsEvaluated++;
+        }
+
+        /**
+         * Add the counts of another instance, e.g., of another thread.
+         *
+         * @param other the statistics to add
+         */
+        public void add(Stats other) {
+            boardsEvaluated += other.boardsEvaluated;
+            cacheHits += other.cacheHits;
+            cacheProbes += other.cacheProbes;
+            cacheFound += other.cacheFound;
+            cutoffs += other.cutoffs;
+            firstMoveCutoffs += other.firstMoveCutoffs;
+            aspirationSearches += other.aspirationSearches;
+            aspirationFailLow += other.aspirationFailLow;
+            aspirationFailHigh += other.aspirationFailHigh;
+            probCuts += other.probCuts;
+            etcCutoffs += other.etcCutoffs;
+            stabilityCutoffs += other.stabilityCutoffs;
+            splits += other.splits;
+            splitCutoffs += other.splitCutoffs;
+            siblingsStarted += other.siblingsStarted;
+            siblingsSearched += other.siblingsSearched;
+        }
+
+        public void addBoards(long boards) {
+            boardsEvaluated += boards;
+        }
+
+        public void incCacheHit() {
+            cacheHits++;
+        }
+
+        public void incCacheProbe(boolean found) {
+            cacheProbes++;
+            if (found) {
+                cacheFound++;
+            }
+        }
+
+        public void incCutoff(boolean firstMove) {
+            cutoffs++;
+            if (firstMove) {
+                firstMoveCutoffs++;
+            }
+        }
+
+        public int getCutoffs() {
+            return cutoffs;
+        }
+
+        /**
+         * Count a split point once its siblings are done.
+         *
+         * @param cutoff          whether a sibling caused a cutoff
+         * @param siblingsStarted the number of siblings that were searched
+         */
+        public void incSplit(boolean cutoff, int siblingsStarted) {
+            splits++;
+            if (cutoff) {
+                splitCutoffs++;
+            }
+            this.siblingsStarted += siblingsStarted;
+        }
+
+        public void incSiblingSearched() {
+            siblingsSearched++;
+        }
+
+        public int getSplits() {
+            return splits;
+        }
+
+        public int getSplitCutoffs() {
+            return splitCutoffs;
+        }
+
+        /**
+         * Get the number of siblings started at split points, as counted by
+         * the owners of the split points.
+         *
+         * @return number of siblings
+         */
+        public int getSiblingsStarted() {
+            return siblingsStarted;
+        }
+
+        /**
+         * Get the number of siblings searched at split points, as counted by
+         * the threads searching them.
+         *
+         * @return number of siblings
+         */
+        public int getSiblingsSearched() {
+            return siblingsSearched;
+        }
+
+        /**
+         * Fraction of cutoffs caused by the first move searched.  Alpha-beta
+         * is most efficient when this approaches one.
+         *
+         * @return first move cutoff rate in [0, 1]
+         */
+        public double getFirstMoveCutoffRate() {
+            return cutoffs > 0 ? (double) firstMoveCutoffs / (double) cutoffs : 0.0;
+        }
+
+        public void incAspirationSearch() {
+            aspirationSearches++;
+        }
+
+        public void incAspirationFailLow() {
+            aspirationFailLow++;
+        }
+
+        public void incAspirationFailHigh() {
+            aspirationFailHigh++;
+        }
+
+        public int getAspirationSearches() {
+            return aspirationSearches;
+        }
+
+        public int getAspirationFailLow() {
+            return aspirationFailLow;
+        }
+
+        public int getAspirationFailHigh() {
+            return aspirationFailHigh;
+        }
+
+        public void incProbCut() {
+            probCuts++;
+        }
+
+        public int getProbCuts() {
+            return probCuts;
+        }
+
+        public void incEtcCutoff() {
+            etcCutoffs++;
+        }
+
+        public int getEtcCutoffs() {
+            return etcCutoffs;
+        }
+
+        public void addStabilityCutoffs(long cutoffs) {
+            stabilityCutoffs += cutoffs;
+        }
+
+        public long getStabilityCutoffs() {
+            return stabilityCutoffs;
+        }
+
+        public int getCacheProbes() {
+            return cacheProbes;
+        }
+
+        /**
+         * Fraction of cache probes that found an entry for the position.
+         *
+         * @return hit rate in [0, 1]
+         */
+        public double getCacheHitRate() {
+            return cacheProbes > 0 ? (double) cacheFound / (double) cacheProbes : 0.0;
+        }
+
+        public int getBoardsEvaluated() {
+            return boardsEvaluated;
+        }
+
+        public int getCacheHits() {
+            return cacheHits;
+        }
+
+        public long duration() {
+            return System.currentTimeMillis() - start;
+        }
+    }
+}
@@ -21,8 +21,18 @@ package ca.provenpath.othello.game;
 
 public abstract class Strategy
 {
-    public final static int WIN_BASE = Integer.MAX_VALUE - Board.BOARD_LSIZE;
-    public final static int LOSS_BASE = Integer.MIN_VALUE;
+    /*
+     * Terminal boards score WIN_BASE + pieces or LOSS_BASE + pieces.  The
+     * ranges mirror each other around zero so that scores can be negated,
+     * and leave ample room for heuristic values and search windows.
+     */
+    public final static int WIN_BASE = 1 << 30;
+    public final static int LOSS_BASE = -WIN_BASE - Board.BOARD_LSIZE;
+
+    /**
+     * Exceeds the magnitude of any score.  Bounds the search window.
+     */
+    public final static int INFINITY = WIN_BASE + 2 * Board.BOARD_LSIZE;
 
     /** Assign a numeric value to the board.
      * @param player the perspective of the player to evaluate the board from
@@ -61,6 +71,30 @@ public abstract class Strategy
         return (score >= otherScore) ? (WIN_BASE + score)  : (LOSS_BASE + score);
     }
 
+    /** Translates an exact final disc differential into the value of a
+     * terminal board.
+     * @param differential the player's discs less the opponent's, with empty
+     *                     squares going to the winner
+     * @return the value of the board
+     */
+    public static int fromDiscDifferential( int differential )
+    {
+        int score = (Board.BOARD_LSIZE + differential) / 2;
+
+        return (differential >= 0) ? (WIN_BASE + score) : (LOSS_BASE + score);
+    }
+
+    /** Translates the outcome of a win/loss/draw solve into the value of a
+     * terminal board.  The values are those of the narrowest win, draw and
+     * loss, i.e., a differential of 2, 0 and -2.
+     * @param differential a differential, or a bound of one, with the correct sign
+     * @return the value of the board
+     */
+    public static int fromWinLossDraw( int differential )
+    {
+        return fromDiscDifferential( 2 * Integer.signum( differential ) );
+    }
+
     public static int normalizeScore(int score) {
 
         if (score >= WIN_BASE) {
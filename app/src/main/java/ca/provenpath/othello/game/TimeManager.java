@@ -0,0 +1,238 @@
+/*
+ *  Copyright (c) 2015 Norbert Papke <npapke@acm.org>
+ *
+ *  This file is part of Othello.
+ *
+ *  Othello is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Othello is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Othello.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.provenpath.othello.game;
+
+import android.util.Log;
+
+import java.time.Duration;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how deep the iterative deepening of a move goes.
+ * <p>
+ * An iteration that is interrupted is mostly wasted, so an iteration is
+ * only started if it is expected to finish within the maximum turn time.
+ * Its cost is estimated from the time of the previous iteration and the
+ * effective branching factor measured over the earlier iterations.  The
+ * branching factor cannot exceed the number of empty squares left below
+ * the search horizon.
+ * </p>
+ * <p>
+ * Normally, no iteration is started once a share of the maximum turn time
+ * has passed.  If the best move changed in the last iteration, the
+ * position is unsettled and the share is increased.
+ * </p>
+ * <p>
+ * The maximum turn time remains a hard limit.  Should an estimate be too
+ * low, the player is interrupted when the time is up.
+ * </p>
+ *
+ * @author npapke
+ */
+public class TimeManager {
+    public final static String TAG = TimeManager.class.getSimpleName();
+
+    /**
+     * Share of the maximum turn time after which no iteration is started.
+     */
+    static final double SOFT_SHARE = 0.4;
+
+    /**
+     * Share of the maximum turn time after which no iteration is started
+     * if the best move just changed.
+     */
+    static final double UNSTABLE_SHARE = 0.8;
+
+    /**
+     * Assumed branching factor until one has been measured.
+     */
+    static final double DEFAULT_BRANCHING = 6.0;
+
+    /**
+     * Iterations faster than this are too noisy to measure the branching factor.
+     */
+    private static final long MIN_MEASURED_NANOS = 200000;
+
+    private static final Timer timer = new Timer("TimeManager", true);
+
+    private final long maxNanos;
+    private final LongSupplier clock;
+    private final long start;
+    private TimerTask deadline;
+
+    private long iterationStart;
+    private long lastIterationNanos = 0;
+    private double branchingFactor = 0;
+    private double lastRatio = 0;
+    private int completedDepth = 0;
+    private long completedAt = 0;
+    private Position bestMove;
+    private boolean bestMoveChanged = false;
+
+    /**
+     * Construct a time manager.  The clock starts now.
+     *
+     * @param maxTurnTime the hard limit for the move
+     */
+    public TimeManager(Duration maxTurnTime) {
+        this(maxTurnTime, System::nanoTime);
+    }
+
+    TimeManager(Duration maxTurnTime, LongSupplier clock) {
+        this.maxNanos = maxTurnTime.toNanos();
+        this.clock = clock;
+        this.start = clock.getAsLong();
+    }
+
+    /**
+     * Interrupt the player at the hard limit.
+     *
+     * @param player the player to interrupt
+     */
+    public void start(Player player) {
+        deadline = new TimerTask() {
+            @Override
+            public void run() {
+                Log.i(TAG, "Hard limit reached");
+                player.isInterrupted = true;
+            }
+        };
+
+        timer.schedule(deadline, Math.max(0, (maxNanos - elapsed()) / 1000000));
+    }
+
+    /**
+     * Cancel the hard limit.
+     */
+    public void stop() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+    }
+
+    /**
+     * Decide whether to start an iteration.  The first iteration is
+     * always started.
+     *
+     * @param depth   the depth of the iteration
+     * @param empties the number of empty squares at the root
+     * @return true if the iteration should be started
+     */
+    public boolean startIteration(int depth, int empties) {
+        long now = elapsed();
+
+        if (completedDepth > 0) {
+            if (depth > empties) {
+                // The previous iteration already saw the end of the game
+                return false;
+            }
+
+            double share = bestMoveChanged ? UNSTABLE_SHARE : SOFT_SHARE;
+            if (now >= share * maxNanos) {
+                return false;
+            }
+
+            if (now + estimate(depth, empties) > maxNanos) {
+                Log.i(TAG, String.format("Depth %d is not expected to finish", depth));
+                return false;
+            }
+        }
+
+        iterationStart = now;
+        return true;
+    }
+
+    /**
+     * Record the completion of an iteration.
+     *
+     * @param depth the depth of the iteration
+     * @param best  the best move found
+     */
+    public void endIteration(int depth, Position best) {
+        long now = elapsed();
+        long nanos = now - iterationStart;
+
+        if (lastIterationNanos >= MIN_MEASURED_NANOS) {
+            double ratio = (double) nanos / (double) lastIterationNanos;
+
+            // Odd and even depths alternate in cost, so smooth over both
+            branchingFactor = branchingFactor > 0 ? Math.sqrt(branchingFactor * ratio) : ratio;
+            lastRatio = ratio;
+        }
+
+        bestMoveChanged = bestMove != null && !bestMove.equals(best);
+        bestMove = best;
+        lastIterationNanos = nanos;
+        completedDepth = depth;
+        completedAt = now;
+    }
+
+    /**
+     * Estimate the time an iteration takes.
+     *
+     * @param depth   the depth of the iteration
+     * @param empties the number of empty squares at the root
+     * @return estimated time in nanoseconds
+     */
+    long estimate(int depth, int empties) {
+        // The smoothed factor underestimates the expensive one of odd and even depths
+        double factor = branchingFactor > 0 ? Math.max(branchingFactor, lastRatio) : DEFAULT_BRANCHING;
+
+        // At the horizon of the next iteration, there are at most this many moves
+        factor = Math.min(factor, Math.max(1, empties - depth + 1));
+
+        return (long) (Math.max(factor, 1.0) * lastIterationNanos);
+    }
+
+    /**
+     * Get the deepest completed iteration.
+     *
+     * @return the depth, 0 if none
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Get the time spent since the last completed iteration, i.e., the
+     * time spent on an iteration that was not finished.
+     *
+     * @return the time
+     */
+    public Duration getWastedTime() {
+        return Duration.ofNanos(elapsed() - completedAt);
+    }
+
+    /**
+     * Get the time since the clock started.
+     *
+     * @return the time
+     */
+    public Duration getElapsedTime() {
+        return Duration.ofNanos(elapsed());
+    }
+
+    private long elapsed() {
+        return clock.getAsLong() - start;
+    }
+}
@@ -1,15 +1,44 @@
 package ca.provenpath.othello.game;
 
-import android.util.Log;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-import lombok.Setter;
-
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * A cache for evaluated boards
+ * A cache for evaluated boards.
+ * <p>
+ * The table has a fixed, power-of-two capacity and is backed by two
+ * primitive arrays: one for the Zobrist keys and one for the packed
+ * entries.  Nothing is allocated once the table is constructed.
+ * </p>
+ * <p>
+ * Slots are grouped in buckets of two.  The first slot of a bucket
+ * prefers deeper results, the second slot always takes the most recent
+ * result that did not fit the first.
+ * </p>
+ * <p>
+ * The table is meant to be kept from one search to the next.  Each
+ * entry is tagged with the generation of the search that stored it.
+ * Entries from earlier generations remain valid for lookups but are the
+ * first to be replaced, so that deep results from a previous move do not
+ * crowd out the current search.
+ * </p>
+ * <p>
+ * An entry packs, from the least significant bit:
+ * <ul>
+ * <li>32 bits value</li>
+ * <li>8 bits depth</li>
+ * <li>2 bits flag, zero for an empty slot</li>
+ * <li>7 bits best move plus one, zero for none</li>
+ * <li>8 bits generation</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The table may be shared by search threads without locking.  A slot
+ * stores its key XORed with its entry.  A slot that is torn by concurrent
+ * writes no longer matches its key and is treated as a miss.  Lost writes
+ * only cost search effort.
+ * </p>
+ *
+ * @see Board#getHashKey(BoardValue)
  */
 public class TranspositionTable {
     public final static String TAG = TranspositionTable.class.getSimpleName();
@@ -20,55 +49,164 @@ public class TranspositionTable {
         UPPERBOUND
     }
 
-    @AllArgsConstructor
-    @Getter
-    @Setter
-    public static class Entry {
-        int value;
-        int depth;
-        Flag flag;
-        Board board;
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof Entry)) return false;
-
-            Entry entry = (Entry) o;
-
-            if (value != entry.value) return false;
-            if (depth != entry.depth) return false;
-            if (flag != entry.flag) return false;
-            return board != null ? board.equals(entry.board) : entry.board == null;
-        }
+    /**
+     * Default capacity, as a power of two.  2^18 entries take 4 MB.
+     */
+    public static final int DEFAULT_SIZE_LOG2 = 18;
 
-        @Override
-        public int hashCode() {
-            return board.hashCode();
-        }
-    }
+    /**
+     * Returned by {@link #get(long)} when there is no entry.
+     */
+    public static final long MISS = 0;
+
+    /**
+     * Best move of entries that do not have one.
+     */
+    public static final int NO_MOVE = -1;
 
-    private Map<Integer, Entry> table;
+    private static final Flag[] FLAGS = Flag.values();
+
+    private static final int DEPTH_SHIFT = 32;
+    private static final int FLAG_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int GENERATION_SHIFT = 49;
+
+    private static final long DEPTH_MASK = 0xff;
+    private static final long FLAG_MASK = 0x3;
+    private static final long MOVE_MASK = 0x7f;
+    private static final long GENERATION_MASK = 0xff;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int bucketMask;
+    private volatile int generation = 0;
 
     public TranspositionTable() {
-        table = new HashMap<>(1000000);
+        this(DEFAULT_SIZE_LOG2);
+    }
+
+    /**
+     * Construct a table.
+     *
+     * @param sizeLog2 capacity of the table as a power of two
+     */
+    public TranspositionTable(int sizeLog2) {
+        Assert.isTrue(sizeLog2 >= 1 && sizeLog2 <= 30, "Table size");
+
+        int capacity = 1 << sizeLog2;
+
+        keys = new long[capacity];
+        entries = new long[capacity];
+        bucketMask = (capacity - 1) & ~1;
     }
 
-    public void put(Entry entry) {
-        table.put(entry.hashCode(), entry);
+    /**
+     * Store an evaluation.
+     *
+     * @param key      Zobrist key of the position
+     * @param value    value of the position
+     * @param depth    depth of the search that determined the value
+     * @param flag     whether the value is exact or a bound
+     * @param bestMove linear position of the best move, or {@link #NO_MOVE}
+     */
+    public void put(long key, int value, int depth, Flag flag, int bestMove) {
+        long entry = pack(value, depth, flag, bestMove, generation);
+        int slot = (int) key & bucketMask;
+        long current = entries[slot];
+
+        if ((keys[slot] ^ current) == key
+                || current == MISS
+                || generationOf(current) != generation
+                || depthOf(current) <= depth) {
+            keys[slot] = key ^ entry;
+            entries[slot] = entry;
+        } else {
+            keys[slot + 1] = key ^ entry;
+            entries[slot + 1] = entry;
+        }
     }
 
-    public Entry get(Board board) {
-        Entry entry = table.get(board.hashCode());
-        if (entry != null) {
-            if (entry.getBoard().equals(board)) {
-                //Log.d(TAG, entry.getFlag().toString() + " Cache hit at depth " + entry.getDepth() );
+    /**
+     * Look up an evaluation.
+     *
+     * @param key Zobrist key of the position
+     * @return the packed entry, or {@link #MISS}
+     */
+    public long get(long key) {
+        int slot = (int) key & bucketMask;
+
+        for (int i = slot; i < slot + 2; i++) {
+            // Read each array once so that the check and the result agree
+            long entry = entries[i];
+
+            if (entry != MISS && (keys[i] ^ entry) == key) {
                 return entry;
-            } else {
-                Log.d(TAG, "Cache collision");
             }
         }
-        return null;
+
+        return MISS;
+    }
+
+    /**
+     * Start a new generation.  Existing entries can still be found, but
+     * are replaced ahead of entries from the new generation.
+     */
+    public void nextGeneration() {
+        generation = (generation + 1) & (int) GENERATION_MASK;
+    }
+
+    /**
+     * Get the generation that new entries are tagged with.
+     *
+     * @return the generation
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, MISS);
+        generation = 0;
+    }
+
+    /**
+     * Get the number of slots.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public static int valueOf(long entry) {
+        return (int) entry;
     }
 
+    public static int depthOf(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    public static Flag flagOf(long entry) {
+        return FLAGS[(int) ((entry >>> FLAG_SHIFT) & FLAG_MASK) - 1];
+    }
+
+    public static int bestMoveOf(long entry) {
+        return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    public static int generationOf(long entry) {
+        return (int) ((entry >>> GENERATION_SHIFT) & GENERATION_MASK);
+    }
+
+    private static long pack(int value, int depth, Flag flag, int bestMove, int generation) {
+        return (value & 0xffffffffL)
+                | ((Math.min(Math.max(depth, 0), DEPTH_MASK)) << DEPTH_SHIFT)
+                | ((long) (flag.ordinal() + 1) << FLAG_SHIFT)
+                | ((long) (bestMove + 1) << MOVE_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+    }
 }
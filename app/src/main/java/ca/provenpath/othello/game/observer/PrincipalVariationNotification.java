@@ -0,0 +1,20 @@
+package ca.provenpath.othello.game.observer;
+
+import ca.provenpath.othello.game.Move;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The line of play the engine expects, sent after each iteration.
+ */
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@Getter
+public class PrincipalVariationNotification extends GameNotification {
+
+    int depth;
+    List<Move> moves;
+}
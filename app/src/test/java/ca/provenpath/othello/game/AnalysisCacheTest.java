@@ -0,0 +1,101 @@
+package ca.provenpath.othello.game;
+
+import ca.provenpath.othello.game.observer.AnalysisBoardNotification;
+import ca.provenpath.othello.game.observer.GameNotification;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AnalysisCacheTest {
+
+    @Test
+    public void deepestAnalysisCached() throws InterruptedException {
+        Board board = SearchEngineTest.openingPosition(new Random(20150614), 12);
+        AnalysisCache cache = new AnalysisCache(5);
+
+        assertNull(cache.get(board, BoardValue.BLACK));
+
+        analyze(cache, board, BoardValue.BLACK);
+
+        AnalysisCache.Hint hint = cache.get(board, BoardValue.BLACK);
+        assertNotNull(hint);
+        assertEquals(5, hint.getDepth());
+        assertTrue(board.isValidMove(BoardValue.BLACK, hint.getPosition().getLinear()));
+
+        // Same as a search to the same depth
+        SearchEngine.MiniMaxResult result = new SearchEngine(BoardValue.BLACK).search(
+                SearchEngineTest.newPlayer(BoardValue.BLACK, 5), board, n -> {
+                });
+        assertEquals(result.getValue(), hint.getValue());
+
+        // The other player's analysis is separate
+        assertNull(cache.get(board, BoardValue.WHITE));
+
+        cache.clear();
+        assertNull(cache.get(board, BoardValue.BLACK));
+    }
+
+    @Test
+    public void stopAnalysis() throws InterruptedException {
+        Board board = SearchEngineTest.openingPosition(new Random(20150615), 16);
+        AnalysisCache cache = new AnalysisCache(30);
+
+        cache.analyze(board, BoardValue.BLACK);
+        Thread.sleep(200);
+        assertTrue(cache.isAnalyzing());
+
+        long start = System.nanoTime();
+        cache.stop();
+
+        assertFalse(cache.isAnalyzing());
+        assertTrue(System.nanoTime() - start < 100000000L);
+    }
+
+    @Test
+    public void noHintBeforeFirstDepth() {
+        Board board = SearchEngineTest.openingPosition(new Random(20150617), 12);
+        AnalysisCache cache = new AnalysisCache(5);
+
+        // Stopped before the first depth completes
+        ComputerPlayer analyst = new ComputerPlayer(BoardValue.BLACK);
+        analyst.setThreads(1);
+        analyst.interruptMove();
+        cache.run(new SearchEngine(BoardValue.BLACK), analyst, board, board.getHashKey(BoardValue.BLACK));
+
+        assertNull(cache.get(board, BoardValue.BLACK));
+    }
+
+    @Test
+    public void hintFromCache() throws InterruptedException {
+        Board board = SearchEngineTest.openingPosition(new Random(20150616), 10);
+        AnalysisCache cache = new AnalysisCache(4);
+        analyze(cache, board, BoardValue.BLACK);
+
+        HumanPlayer player = new HumanPlayer(BoardValue.BLACK, cache);
+        List<GameNotification> notifications = new ArrayList<>();
+        player.makeMove(board).subscribe(notifications::add);
+
+        player.hint();
+        player.interruptMove();
+
+        AnalysisBoardNotification hint = (AnalysisBoardNotification) notifications.get(0);
+        Position expected = cache.get(board, BoardValue.BLACK).getPosition();
+        assertEquals(expected, hint.getPosition());
+        assertEquals(BoardValue.BEST_MOVE, hint.getBoard().getValue(expected));
+    }
+
+    private static void analyze(AnalysisCache cache, Board board, BoardValue player) throws InterruptedException {
+        cache.analyze(board, player);
+        while (cache.isAnalyzing()) {
+            Thread.sleep(10);
+        }
+    }
+}
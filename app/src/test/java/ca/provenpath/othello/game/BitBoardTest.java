@@ -0,0 +1,267 @@
+package ca.provenpath.othello.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BitBoardTest {
+
+    private static final int[][] DIRECTIONS = {
+            {0, 1}, {0, -1}, {1, 0}, {-1, 0}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
+    };
+
+    @Test
+    public void validMovesStart() {
+        Board board = new Board();
+
+        long black = board.getValidMoves(BoardValue.BLACK);
+
+        assertEquals(4, Long.bitCount(black));
+        assertEquals(referenceValidMoves(board, BoardValue.BLACK), black);
+        assertEquals(referenceValidMoves(board, BoardValue.WHITE), board.getValidMoves(BoardValue.WHITE));
+    }
+
+    @Test
+    public void validMovesRandomPositions() {
+        Random random = new Random(20150222);
+
+        for (int i = 0; i < 100000; i++) {
+            Board board = randomPosition(random);
+
+            assertEquals(board.toString(),
+                    referenceValidMoves(board, BoardValue.BLACK), board.getValidMoves(BoardValue.BLACK));
+            assertEquals(board.toString(),
+                    referenceValidMoves(board, BoardValue.WHITE), board.getValidMoves(BoardValue.WHITE));
+        }
+    }
+
+    @Test
+    public void flipsRandomPositions() {
+        Random random = new Random(20150225);
+        int movesCompared = 0;
+
+        for (int i = 0; i < 2000000; i++) {
+            Board board = randomPosition(random);
+            BoardValue player = random.nextBoolean() ? BoardValue.BLACK : BoardValue.WHITE;
+
+            long moves = board.getValidMoves(player);
+            if (moves == 0) {
+                continue;
+            }
+
+            int pos = nthBit(moves, random.nextInt(Long.bitCount(moves)));
+
+            Board expected = new Board(board);
+            referenceMakeMove(expected, player, pos);
+
+            Board actual = new Board(board);
+            actual.makeMove(player, pos);
+
+            if (!expected.equals(actual)) {
+                fail(String.format("%s%s at %d:\n%s\nexpected\n%s", board, player, pos, actual, expected));
+            }
+            ++movesCompared;
+        }
+
+        assertTrue(movesCompared > 1000000);
+    }
+
+    @Test
+    public void flipsRandomGames() {
+        Random random = new Random(20150419);
+
+        for (int game = 0; game < 2000; game++) {
+            Board board = new Board();
+            BoardValue player = BoardValue.BLACK;
+
+            while (board.hasValidMove(BoardValue.BLACK) || board.hasValidMove(BoardValue.WHITE)) {
+                long moves = board.getValidMoves(player);
+
+                if (moves != 0) {
+                    int pos = nthBit(moves, random.nextInt(Long.bitCount(moves)));
+
+                    Board expected = new Board(board);
+                    referenceMakeMove(expected, player, pos);
+                    board.makeMove(player, pos);
+
+                    assertEquals(expected, board);
+                }
+
+                player = player.otherPlayer();
+            }
+        }
+    }
+
+    @Test
+    public void stableDiscsCornersAndEdges() {
+        assertEquals(0, new Board().getStableDiscs(BoardValue.BLACK));
+
+        // A corner, and the run of the same color along the edge from it
+        Board board = new Board("bbbw...."
+                + "b......."
+                + "........"
+                + "........"
+                + "........"
+                + "........"
+                + "........"
+                + ".......w");
+
+        assertEquals(0x0000000000000107L, board.getStableDiscs(BoardValue.BLACK));
+        assertEquals(0x8000000000000000L, board.getStableDiscs(BoardValue.WHITE));
+    }
+
+    @Test
+    public void stableDiscsNeverFlipped() {
+        Random random = new Random(20150510);
+
+        for (int game = 0; game < 500; game++) {
+            Board board = new Board();
+            BoardValue player = BoardValue.BLACK;
+            long blackStable = 0;
+            long whiteStable = 0;
+
+            while (board.hasValidMove(BoardValue.BLACK) || board.hasValidMove(BoardValue.WHITE)) {
+                long moves = board.getValidMoves(player);
+
+                if (moves != 0) {
+                    board.makeMove(player, nthBit(moves, random.nextInt(Long.bitCount(moves))));
+
+                    // Stable discs stay stable
+                    long black = board.getStableDiscs(BoardValue.BLACK);
+                    long white = board.getStableDiscs(BoardValue.WHITE);
+                    assertEquals(board.toString(), blackStable, black & blackStable);
+                    assertEquals(board.toString(), whiteStable, white & whiteStable);
+                    blackStable = black;
+                    whiteStable = white;
+
+                    for (long m = black | white; m != 0; m &= m - 1) {
+                        assertEquals(board.toString(), 4, board.countProtected(Long.numberOfTrailingZeros(m)));
+                    }
+                }
+
+                player = player.otherPlayer();
+            }
+        }
+    }
+
+    static int nthBit(long mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Linear offsets, as used by the original implementation.
+     */
+    private static final int[] ADJACENT_OFFSETS = {
+            1, -1, Board.BOARD_SIZE, -Board.BOARD_SIZE,
+            Board.BOARD_SIZE + 1, Board.BOARD_SIZE - 1, -Board.BOARD_SIZE + 1, -Board.BOARD_SIZE - 1
+    };
+
+    /**
+     * The original cell-by-cell implementation of {@link Board#makeMove(BoardValue, int)}.
+     * Valid moves are not updated.
+     */
+    static void referenceMakeMove(Board board, BoardValue thisPlayer, int pos) {
+        board.setBoardValue(pos, thisPlayer);
+
+        for (int direction : ADJACENT_OFFSETS) {
+            if (referenceIsFlippable(board, direction, thisPlayer, pos)) {
+                int cur = pos;
+
+                while (true) {
+                    cur = Position.add(cur, direction);
+
+                    if (board.getLvalue(cur) == thisPlayer) {
+                        break;
+                    }
+
+                    board.setBoardValue(cur, thisPlayer);
+                }
+            }
+        }
+    }
+
+    private static boolean referenceIsFlippable(Board board, int direction, BoardValue thisPlayer, int pos) {
+        int cur = pos;
+        int otherPieces = 0;
+
+        for (; ; ) {
+            cur = Position.add(cur, direction);
+
+            if (!Position.isValid(cur)) {
+                return false;
+            }
+
+            BoardValue curBoardValue = board.getLvalue(cur);
+
+            if (curBoardValue == thisPlayer) {
+                return otherPieces > 0;
+            } else if (!curBoardValue.isPlayer()) {
+                return false;
+            }
+
+            ++otherPieces;
+        }
+    }
+
+    /**
+     * Fills the board at random.  Most of these positions cannot occur
+     * in a game, which is the point: they exercise the edges.
+     */
+    static Board randomPosition(Random random) {
+        StringBuilder state = new StringBuilder();
+        int density = random.nextInt(10);
+
+        for (int lpos = 0; lpos < Board.BOARD_LSIZE; lpos++) {
+            int r = random.nextInt(10);
+            state.append(r < density ? (random.nextBoolean() ? 'b' : 'w') : '.');
+        }
+
+        return new Board(state.toString());
+    }
+
+    /**
+     * Walks the board cell by cell in all directions.
+     */
+    static long referenceValidMoves(Board board, BoardValue player) {
+        BoardValue other = player.otherPlayer();
+        long moves = 0;
+
+        for (int x = 0; x < Board.BOARD_SIZE; x++) {
+            for (int y = 0; y < Board.BOARD_SIZE; y++) {
+                if (board.getValue(x, y).isPlayer()) {
+                    continue;
+                }
+
+                for (int[] d : DIRECTIONS) {
+                    int cx = x + d[0];
+                    int cy = y + d[1];
+                    int run = 0;
+
+                    while (onBoard(cx, cy) && board.getValue(cx, cy) == other) {
+                        cx += d[0];
+                        cy += d[1];
+                        run++;
+                    }
+
+                    if (run > 0 && onBoard(cx, cy) && board.getValue(cx, cy) == player) {
+                        moves |= 1L << Position.makeLinear(x, y);
+                    }
+                }
+            }
+        }
+
+        return moves;
+    }
+
+    static boolean onBoard(int x, int y) {
+        return x >= 0 && x < Board.BOARD_SIZE && y >= 0 && y < Board.BOARD_SIZE;
+    }
+}
@@ -2,7 +2,12 @@ package ca.provenpath.othello.game;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class BoardTest {
@@ -71,5 +76,47 @@ public class BoardTest {
         assertEquals(3, board.countProtected(39));
     }
 
+    @Test
+    public void hashKeyIncremental() {
+        Random random = new Random(20150330);
+
+        for (int game = 0; game < 200; game++) {
+            SearchBoard board = new SearchBoard(new Board());
+            BoardValue player = BoardValue.BLACK;
+            List<Long> keys = new ArrayList<>();
+            List<BoardValue> players = new ArrayList<>();
+
+            while (board.hasValidMove(BoardValue.BLACK) || board.hasValidMove(BoardValue.WHITE)) {
+                long moves = board.getValidMoves(player);
+
+                if (moves != 0) {
+                    keys.add(board.getHashKey(player));
+                    players.add(player);
+                    board.play(player, BitBoardTest.nthBit(moves, random.nextInt(Long.bitCount(moves))));
+
+                    // Same pieces, built from scratch
+                    Board fresh = new Board(board.getLvalue(), 0, null, 1);
+                    assertEquals(fresh.getHashKey(BoardValue.BLACK), board.getHashKey(BoardValue.BLACK));
+                    assertEquals(fresh.hashCode(), board.hashCode());
+                }
+
+                player = player.otherPlayer();
+            }
+
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                board.undo();
+                assertEquals(keys.get(i), (Long) board.getHashKey(players.get(i)));
+            }
+
+            assertEquals(new Board(), board);
+        }
+    }
+
+    @Test
+    public void hashKeySideToMove() {
+        Board board = new Board();
 
-}
\ No newline at end of file
+        assertNotEquals(board.getHashKey(BoardValue.BLACK), board.getHashKey(BoardValue.WHITE));
+        assertEquals(new Board().getHashKey(BoardValue.WHITE), board.getHashKey(BoardValue.WHITE));
+    }
+}
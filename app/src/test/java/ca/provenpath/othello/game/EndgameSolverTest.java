@@ -0,0 +1,194 @@
+package ca.provenpath.othello.game;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EndgameSolverTest {
+
+    @Test
+    public void finalPosition() throws InterruptedException {
+        // Nobody can move.  Black wins 10 to 0 with 54 empties.
+        StringBuilder state = new StringBuilder();
+        for (int lpos = 0; lpos < Board.BOARD_LSIZE; lpos++) {
+            state.append(lpos < 10 ? 'b' : '.');
+        }
+        Board board = new Board(state.toString());
+
+        EndgameSolver solver = new EndgameSolver(() -> false);
+
+        assertEquals(64, solver.solve(board, BoardValue.BLACK));
+        assertEquals(-64, solver.solve(board, BoardValue.WHITE));
+    }
+
+    @Test
+    public void solveMatchesMinimax() throws InterruptedException {
+        Random random = new Random(20150405);
+        EndgameSolver solver = new EndgameSolver(() -> false);
+        int solved = 0;
+
+        while (solved < 200) {
+            Board board = endgamePosition(random, 1 + random.nextInt(8));
+            BoardValue player = random.nextBoolean() ? BoardValue.BLACK : BoardValue.WHITE;
+
+            int expected = minimax(board, player, false);
+            assertEquals(board.toString(), expected, solver.solve(board, player));
+
+            // Null windows give bounds on the correct side
+            int bound = solver.solve(board, player, expected - 1, expected);
+            assertTrue(bound >= expected);
+            bound = solver.solve(board, player, expected, expected + 1);
+            assertTrue(bound <= expected);
+
+            ++solved;
+        }
+    }
+
+    @Test
+    public void winLossDraw() throws InterruptedException {
+        Random random = new Random(20150419);
+        EndgameSolver solver = new EndgameSolver(() -> false);
+
+        for (int i = 0; i < 100; i++) {
+            Board board = endgamePosition(random, 4 + random.nextInt(8));
+            BoardValue player = random.nextBoolean() ? BoardValue.BLACK : BoardValue.WHITE;
+
+            int exact = solver.solve(board, player);
+            int outcome = solver.solve(board, player, -1, 1);
+
+            assertEquals(board.toString(), Integer.signum(exact), Integer.signum(outcome));
+            assertEquals(Integer.signum(exact), Integer.signum(Strategy.normalizeScore(Strategy.fromWinLossDraw(outcome)) - 32));
+        }
+    }
+
+    @Test
+    public void interrupted() {
+        Board board = endgamePosition(new Random(20150406), 18);
+        EndgameSolver solver = new EndgameSolver(() -> true);
+
+        try {
+            solver.solve(board, BoardValue.BLACK);
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        assertTrue("Solver was not interrupted", false);
+    }
+
+    @Test
+    public void fromDiscDifferential() {
+        assertEquals(64, Strategy.normalizeScore(Strategy.fromDiscDifferential(64)));
+        assertEquals(33, Strategy.normalizeScore(Strategy.fromDiscDifferential(2)));
+        assertEquals(32, Strategy.normalizeScore(Strategy.fromDiscDifferential(0)));
+        assertEquals(-31, Strategy.normalizeScore(Strategy.fromDiscDifferential(-2)));
+        assertEquals(0, Strategy.normalizeScore(Strategy.fromDiscDifferential(-64)));
+
+        assertEquals(33, Strategy.normalizeScore(Strategy.fromWinLossDraw(40)));
+        assertEquals(32, Strategy.normalizeScore(Strategy.fromWinLossDraw(0)));
+        assertEquals(-31, Strategy.normalizeScore(Strategy.fromWinLossDraw(-1)));
+
+        assertTrue(Strategy.fromDiscDifferential(-2) < Strategy.fromDiscDifferential(0));
+        assertTrue(Strategy.fromDiscDifferential(0) < Strategy.fromDiscDifferential(2));
+    }
+
+    /**
+     * Reports how long exact and win/loss/draw solves take by number of empties.
+     */
+    @Test
+    public void benchmarkSolve() throws InterruptedException {
+        Assume.assumeTrue(Boolean.getBoolean(SearchEngineTest.BENCHMARK_PROPERTY));
+
+        for (int empties = 12; empties <= 20; empties += 2) {
+            for (boolean winLossDraw : new boolean[]{false, true}) {
+                benchmarkSolve(empties, winLossDraw);
+            }
+        }
+    }
+
+    private void benchmarkSolve(int empties, boolean winLossDraw) throws InterruptedException {
+        Random random = new Random(20150407);
+        EndgameSolver solver = new EndgameSolver(() -> false);
+        long start = System.currentTimeMillis();
+        int positions = 10;
+
+        for (int i = 0; i < positions; i++) {
+            Board board = endgamePosition(random, empties);
+            BoardValue player = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+            if (winLossDraw) {
+                solver.solve(board, player, -1, 1);
+            } else {
+                solver.solve(board, player);
+            }
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        System.out.println(String.format("%d empties%s: %d nodes, %d stability cutoffs, %d ms per position, %d nodes/sec",
+                empties,
+                winLossDraw ? " (win/loss/draw)" : "",
+                solver.getNodes() / positions,
+                solver.getStabilityCutoffs() / positions,
+                duration / positions,
+                duration > 0 ? solver.getNodes() * 1000 / duration : 0));
+    }
+
+    /**
+     * Plays random moves until the number of empties is reached.  The
+     * resulting position still has moves.
+     */
+    static Board endgamePosition(Random random, int empties) {
+        for (; ; ) {
+            Board board = new Board();
+            BoardValue player = BoardValue.BLACK;
+
+            while (Board.BOARD_LSIZE - board.getNumPieces() > empties) {
+                long moves = board.getValidMoves(player);
+
+                if (moves == 0) {
+                    if (!board.hasValidMove(player.otherPlayer())) {
+                        break;
+                    }
+                } else {
+                    board.makeMove(player, BitBoardTest.nthBit(moves, random.nextInt(Long.bitCount(moves))));
+                }
+                player = player.otherPlayer();
+            }
+
+            if (board.hasValidMove(BoardValue.BLACK) || board.hasValidMove(BoardValue.WHITE)) {
+                return board;
+            }
+        }
+    }
+
+    /**
+     * Plain minimax on the disc differential.
+     */
+    private static int minimax(Board board, BoardValue player, boolean passed) {
+        long moves = board.getValidMoves(player);
+
+        if (moves == 0) {
+            if (passed) {
+                int own = Long.bitCount(board.getPieces(player));
+                int other = Long.bitCount(board.getPieces(player.otherPlayer()));
+                int empty = Board.BOARD_LSIZE - own - other;
+
+                return own > other ? own - other + empty : own < other ? own - other - empty : 0;
+            }
+
+            return -minimax(board, player.otherPlayer(), true);
+        }
+
+        int best = Integer.MIN_VALUE;
+        for (; moves != 0; moves &= moves - 1) {
+            Board next = new Board(board);
+            next.makeMove(player, Long.numberOfTrailingZeros(moves));
+            best = Math.max(best, -minimax(next, player.otherPlayer(), false));
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,53 @@
+package ca.provenpath.othello.game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MoveOrderingTest {
+
+    private static final long MOVES = (1L << 3) | (1L << 17) | (1L << 40) | (1L << 63);
+
+    @Test
+    public void squareOrderByDefault() {
+        int[] moves = new MoveOrdering().order(MOVES, BoardValue.BLACK, 4, TranspositionTable.NO_MOVE);
+
+        assertEquals(3, moves[0]);
+        assertEquals(17, moves[1]);
+        assertEquals(40, moves[2]);
+        assertEquals(63, moves[3]);
+    }
+
+    @Test
+    public void transpositionMoveThenKillersThenHistory() {
+        MoveOrdering ordering = new MoveOrdering();
+
+        ordering.cutoff(BoardValue.BLACK, 2, 63, 5);
+        ordering.cutoff(BoardValue.BLACK, 4, 17, 1);
+        ordering.cutoff(BoardValue.BLACK, 4, 40, 1);
+
+        int[] moves = ordering.order(MOVES, BoardValue.BLACK, 4, 3);
+
+        assertEquals(3, moves[0]);
+        assertEquals(40, moves[1]);
+        assertEquals(17, moves[2]);
+        assertEquals(63, moves[3]);
+
+        // History is per color
+        moves = ordering.order(MOVES, BoardValue.WHITE, 2, TranspositionTable.NO_MOVE);
+        assertEquals(63, moves[0]);
+        moves = ordering.order(MOVES, BoardValue.WHITE, 3, TranspositionTable.NO_MOVE);
+        assertEquals(3, moves[0]);
+    }
+
+    @Test
+    public void newSearchForgetsKillers() {
+        MoveOrdering ordering = new MoveOrdering();
+
+        ordering.cutoff(BoardValue.WHITE, 1, 40, 1);
+        ordering.newSearch();
+
+        int[] moves = ordering.order(MOVES, BoardValue.WHITE, 1, TranspositionTable.NO_MOVE);
+        assertEquals(3, moves[0]);
+    }
+}
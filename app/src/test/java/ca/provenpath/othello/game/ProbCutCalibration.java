@@ -0,0 +1,183 @@
+package ca.provenpath.othello.game;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fits the {@link ProbCut} parameters of a strategy.
+ * <p>
+ * Positions are sampled from self-play games of a shallow engine.  Each
+ * position is searched at every depth up to the deepest depth, and the
+ * deep values are regressed on the shallow values per depth pair and
+ * game stage.  The output is the table of rows for {@link ProbCut}.
+ * </p>
+ * <p>
+ * Usage: <code>ProbCutCalibration [strategy [positions per stage [deepest depth [seed]]]]</code>
+ * </p>
+ */
+public class ProbCutCalibration {
+
+    /**
+     * Shallow searches are this much shallower than deep searches.
+     */
+    static final int[] REDUCTIONS = {4, 2};
+
+    public static void main(String[] args) {
+        Strategy strategy = StrategyFactory.getObject(args.length > 0 ? args[0] : "adaptive");
+        int perStage = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int deepest = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        Random random = new Random(args.length > 3 ? Long.parseLong(args[3]) : 20150503);
+
+        List<List<Board>> boards = new ArrayList<>();
+        List<List<BoardValue>> movers = new ArrayList<>();
+        for (int stage = 0; stage < ProbCut.STAGES; stage++) {
+            boards.add(new ArrayList<>());
+            movers.add(new ArrayList<>());
+        }
+
+        samplePositions(random, perStage, boards, movers);
+
+        System.out.println(String.format("        PARAMETERS.put(\"%s\", new double[][]{", strategy));
+
+        for (int stage = 0; stage < ProbCut.STAGES; stage++) {
+            int count = boards.get(stage).size();
+            int[][] values = new int[count][];
+
+            for (int i = 0; i < count; i++) {
+                values[i] = values(strategy, boards.get(stage).get(i), movers.get(stage).get(i), deepest);
+            }
+
+            for (int deep = ProbCut.MIN_DEPTH; deep <= deepest; deep++) {
+                for (int reduction : REDUCTIONS) {
+                    int shallow = deep - reduction;
+                    if (shallow < 0) {
+                        continue;
+                    }
+
+                    double[] fit = fit(values, shallow, deep);
+                    System.out.println(String.format("                {%d, %d, %d, %.3f, %.1f, %.1f},",
+                            stage, deep, shallow, fit[0], fit[1], fit[2]));
+                }
+            }
+        }
+
+        System.out.println("        });");
+    }
+
+    /**
+     * Play self-play games and keep positions until every stage has enough.
+     */
+    static void samplePositions(Random random, int perStage, List<List<Board>> boards, List<List<BoardValue>> movers) {
+        Strategy strategy = new AdaptiveStrategy();
+
+        while (boards.stream().anyMatch(list -> list.size() < perStage)) {
+            Board board = new Board();
+            BoardValue toMove = BoardValue.BLACK;
+            int randomPlies = 2 + random.nextInt(8);
+
+            for (int ply = 0; board.hasValidMove(BoardValue.BLACK) || board.hasValidMove(BoardValue.WHITE); ply++) {
+                long moves = board.getValidMoves(toMove);
+
+                if (moves != 0) {
+                    int stage = ProbCut.stageOf(Board.BOARD_LSIZE - board.getNumPieces());
+
+                    // Sample sparsely so that positions of one game are not correlated
+                    if (Long.bitCount(moves) > 1 && boards.get(stage).size() < perStage && random.nextInt(6) == 0) {
+                        boards.get(stage).add(new Board(board));
+                        movers.get(stage).add(toMove);
+                    }
+
+                    int pos;
+                    if (ply < randomPlies || random.nextInt(10) == 0) {
+                        int index = random.nextInt(Long.bitCount(moves));
+                        for (int i = 0; i < index; i++) {
+                            moves &= moves - 1;
+                        }
+                        pos = Long.numberOfTrailingZeros(moves);
+                    } else {
+                        ComputerPlayer player = newPlayer(toMove, strategy, 2);
+                        pos = new SearchEngine(toMove).search(player, board, n -> {
+                        }).getPosition().getLinear();
+                    }
+
+                    board.makeMove(toMove, pos);
+                }
+
+                toMove = toMove.otherPlayer();
+            }
+        }
+    }
+
+    /**
+     * Search a position at every depth.
+     *
+     * @return the values from the perspective of the player to move, indexed by depth
+     */
+    static int[] values(Strategy strategy, Board board, BoardValue toMove, int deepest) {
+        int[] values = new int[deepest + 1];
+        SearchEngine engine = new SearchEngine(toMove);
+
+        values[0] = strategy.determineBoardValue(toMove, board);
+        for (int depth = 1; depth <= deepest; depth++) {
+            values[depth] = engine.search(newPlayer(toMove, strategy, depth), board, n -> {
+            }).getValue();
+        }
+
+        return values;
+    }
+
+    /**
+     * Least squares fit of the deep values on the shallow values.  Terminal
+     * values are left out.
+     *
+     * @return slope, intercept and standard deviation of the residuals
+     */
+    static double[] fit(int[][] values, int shallow, int deep) {
+        double n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+
+        for (int[] v : values) {
+            if (isHeuristic(v[shallow]) && isHeuristic(v[deep])) {
+                n++;
+                sumX += v[shallow];
+                sumY += v[deep];
+                sumXX += (double) v[shallow] * v[shallow];
+                sumXY += (double) v[shallow] * v[deep];
+            }
+        }
+
+        double slope = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+        double intercept = (sumY - slope * sumX) / n;
+        double sumSquares = 0;
+
+        for (int[] v : values) {
+            if (isHeuristic(v[shallow]) && isHeuristic(v[deep])) {
+                double residual = v[deep] - (slope * v[shallow] + intercept);
+                sumSquares += residual * residual;
+            }
+        }
+
+        return new double[]{slope, intercept, Math.sqrt(sumSquares / (n - 2))};
+    }
+
+    static boolean isHeuristic(int value) {
+        return Math.abs(value) < Strategy.WIN_BASE / 2;
+    }
+
+    static ComputerPlayer newPlayer(BoardValue color, Strategy strategy, int depth) {
+        ComputerPlayer player = new ComputerPlayer(color);
+        player.setStrategy(strategy);
+        player.setMaxDepth(depth);
+        player.setMaxTurnTime(Duration.ofMinutes(10));
+        player.setEndgameEmpties(0);
+        player.setWinLossDrawEmpties(0);
+        player.setThreads(1);
+
+        return player;
+    }
+}
@@ -0,0 +1,80 @@
+package ca.provenpath.othello.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProbCutTest {
+
+    private static final double[][] ROWS = {
+            {1, 4, 0, 1.0, 0.0, 10.0},
+            {1, 4, 2, 2.0, 5.0, 4.0},
+    };
+
+    @Test
+    public void cheapestCutFirst() {
+        ProbCut probCut = new ProbCut(ROWS);
+
+        ProbCut.Cut[] cuts = probCut.cutsFor(4, 30);
+        assertEquals(2, cuts.length);
+        assertEquals(0, cuts[0].shallowDepth(4));
+        assertEquals(2, cuts[1].shallowDepth(4));
+
+        // Other stages are not pruned
+        assertEquals(0, probCut.cutsFor(4, 50).length);
+        assertEquals(0, probCut.cutsFor(3, 30).length);
+    }
+
+    @Test
+    public void deeperDepthsKeepTheReduction() {
+        ProbCut.Cut[] cuts = new ProbCut(ROWS).cutsFor(9, 30);
+
+        assertEquals(5, cuts[0].shallowDepth(9));
+        assertEquals(7, cuts[1].shallowDepth(9));
+    }
+
+    @Test
+    public void bounds() {
+        ProbCut.Cut cut = new ProbCut(ROWS).cutsFor(4, 30)[1];
+
+        // deep = 2 * shallow + 5, sigma 4
+        assertEquals((int) Math.ceil((100 + ProbCut.THRESHOLD * 4 - 5) / 2.0), cut.highBound(100));
+        assertEquals((int) Math.floor((-100 - ProbCut.THRESHOLD * 4 - 5) / 2.0), cut.lowBound(-100));
+    }
+
+    @Test
+    public void calibratedStrategies() {
+        assertNotNull(ProbCut.forStrategy(new AdaptiveStrategy()));
+        assertNotNull(ProbCut.forStrategy(new StaticStrategy()));
+        assertNull(ProbCut.forStrategy(new GreedyStrategy()));
+    }
+
+    @Test
+    public void searchWithProbCut() {
+        Random random = new Random(20150503);
+
+        for (int i = 0; i < 5; i++) {
+            Board board = SearchEngineTest.openingPosition(random, 20 + random.nextInt(20));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (!board.hasValidMove(toMove)) {
+                continue;
+            }
+
+            ComputerPlayer player = SearchEngineTest.newPlayer(toMove, 7);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+            player.setProbCut(true);
+
+            SearchEngine engine = new SearchEngine(toMove);
+            SearchEngine.MiniMaxResult result = engine.search(player, board, n -> {
+            });
+
+            assertTrue(board.isValidMove(toMove, result.getPosition().getLinear()));
+        }
+    }
+}
@@ -0,0 +1,922 @@
+package ca.provenpath.othello.game;
+
+import ca.provenpath.othello.game.observer.AnalysisBoardNotification;
+import ca.provenpath.othello.game.observer.AnalysisValueNotification;
+import ca.provenpath.othello.game.observer.EngineNotification;
+import ca.provenpath.othello.game.observer.PrincipalVariationNotification;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearchEngineTest {
+
+    /**
+     * Set this system property to run the benchmarks.
+     */
+    static final String BENCHMARK_PROPERTY = "othello.benchmark";
+
+    @Test
+    public void searchFindsValidMove() {
+        Board board = new Board();
+        ComputerPlayer player = newPlayer(BoardValue.BLACK, 4);
+
+        SearchEngine.MiniMaxResult result = new SearchEngine(BoardValue.BLACK).search(player, board, n -> {
+        });
+
+        assertTrue(board.isValidMove(BoardValue.BLACK, result.getPosition().getLinear()));
+    }
+
+    @Test
+    public void tableKeptAcrossSearches() {
+        Board board = openingPosition(new Random(20150301), 12);
+        ComputerPlayer player = newPlayer(BoardValue.BLACK, 5);
+        SearchEngine engine = new SearchEngine(BoardValue.BLACK);
+
+        SearchEngine.MiniMaxResult first = engine.search(player, board, n -> {
+        });
+        SearchEngine.Stats cold = engine.getStats();
+
+        SearchEngine.MiniMaxResult second = engine.search(player, board, n -> {
+        });
+        SearchEngine.Stats warm = engine.getStats();
+
+        assertEquals(first.getPosition(), second.getPosition());
+        assertTrue(warm.getCacheHitRate() > cold.getCacheHitRate());
+        assertTrue(warm.getBoardsEvaluated() < cold.getBoardsEvaluated());
+    }
+
+    @Test
+    public void endgameSolved() throws InterruptedException {
+        Random random = new Random(20150412);
+
+        for (int i = 0; i < 10; i++) {
+            Board board = EndgameSolverTest.endgamePosition(random, 10);
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+            ComputerPlayer player = newPlayer(toMove, 2);
+            player.setEndgameEmpties(10);
+
+            SearchEngine.MiniMaxResult result = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            int differential = new EndgameSolver(() -> false).solve(board, toMove);
+            if (Long.bitCount(board.getValidMoves(toMove)) > 1) {
+                assertEquals(board.toString(), Strategy.fromDiscDifferential(differential), result.getValue());
+            }
+
+            player.setEndgameEmpties(8);
+            result = new SearchEngine(toMove).search(player, board, n -> {
+            });
+            if (Long.bitCount(board.getValidMoves(toMove)) > 1) {
+                assertEquals(board.toString(), Strategy.fromWinLossDraw(differential), result.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void winLossDrawStopsAtWin() throws InterruptedException {
+        Random random = new Random(20150412);
+        int tested = 0;
+
+        for (int i = 0; i < 20; i++) {
+            Board board = EndgameSolverTest.endgamePosition(random, 10);
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            long moves = board.getValidMoves(toMove);
+
+            int wins = 0;
+            for (long m = moves; m != 0; m &= m - 1) {
+                Board next = new Board(board);
+                next.makeMove(toMove, Long.numberOfTrailingZeros(m));
+                if (-new EndgameSolver(() -> false).solve(next, toMove.otherPlayer()) > 0) {
+                    wins++;
+                }
+            }
+            if (wins < 2) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 2);
+            player.setEndgameEmpties(8);
+
+            int[] solved = {0};
+            new SearchEngine(toMove).search(player, board, n -> {
+                if (n instanceof EngineNotification && ((EngineNotification) n).getDepth() == 10) {
+                    solved[0]++;
+                }
+            });
+
+            // At least the last of the winning moves is not solved
+            tested++;
+            assertTrue(board.toString(), solved[0] < Long.bitCount(moves));
+        }
+
+        assertTrue(tested > 0);
+    }
+
+    @Test
+    public void searchMatchesMinimax() {
+        Random random = new Random(20150315);
+        Strategy strategy = new AdaptiveStrategy();
+
+        for (int i = 0; i < 30; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(40));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (!board.hasValidMove(toMove) || Long.bitCount(board.getValidMoves(toMove)) < 2) {
+                continue;
+            }
+
+            // Deep enough for enhanced transposition cutoffs below the first ply
+            ComputerPlayer player = newPlayer(toMove, 5);
+            player.setStrategy(strategy);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+
+            SearchEngine.MiniMaxResult result = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            assertEquals(board.toString(), minimax(strategy, toMove, board, toMove, 5), result.getValue());
+        }
+    }
+
+    @Test
+    public void parallelSearchMatchesSequential() {
+        Random random = new Random(20150419);
+
+        for (int i = 0; i < 10; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (!board.hasValidMove(toMove) || Long.bitCount(board.getValidMoves(toMove)) < 2) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 5);
+            SearchEngine.MiniMaxResult sequential = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            player.setThreads(4);
+            SearchEngine.MiniMaxResult parallel = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            assertEquals(board.toString(), sequential.getValue(), parallel.getValue());
+
+            player.setSplitInterior(true);
+            SearchEngine.MiniMaxResult split = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            assertEquals(board.toString(), sequential.getValue(), split.getValue());
+        }
+    }
+
+    @Test
+    public void splitSiblingsFinishBeforeSplitReturns() {
+        Random random = new Random(20150510);
+        int splitCutoffs = 0;
+
+        for (int i = 0; i < 6; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (Long.bitCount(board.getValidMoves(toMove)) < 2) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 7);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+            player.setThreads(4);
+            player.setSplitInterior(true);
+
+            SearchEngine engine = new SearchEngine(toMove);
+            engine.search(player, board, n -> {
+            });
+            SearchEngine.Stats stats = engine.getStats();
+
+            // Each sibling counted by the owner of its split point has been counted as searched
+            assertTrue(stats.getSplits() > 0);
+            assertEquals(board.toString(), stats.getSiblingsStarted(), stats.getSiblingsSearched());
+            splitCutoffs += stats.getSplitCutoffs();
+        }
+
+        assertTrue(splitCutoffs > 0);
+    }
+
+    @Test
+    public void lazySmpMatchesSequential() {
+        Random random = new Random(20150426);
+
+        for (int i = 0; i < 10; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (!board.hasValidMove(toMove) || Long.bitCount(board.getValidMoves(toMove)) < 2) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 5);
+            SearchEngine.MiniMaxResult sequential = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            player.setThreads(4);
+            player.setLazySmp(true);
+            SearchEngine.MiniMaxResult lazy = new SearchEngine(toMove).search(player, board, n -> {
+            });
+
+            assertEquals(board.toString(), sequential.getValue(), lazy.getValue());
+        }
+    }
+
+    @Test
+    public void multiPvExactForBestMoves() {
+        Random random = new Random(20150621);
+        Strategy strategy = new AdaptiveStrategy();
+
+        for (int i = 0; i < 10; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            long moves = board.getValidMoves(toMove);
+            if (Long.bitCount(moves) < 4) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 4);
+            player.setStrategy(strategy);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+            player.setMultiPv(3);
+            player.setShowOverlay(true);
+
+            List<AnalysisValueNotification> notifications = new ArrayList<>();
+            new SearchEngine(toMove).search(player, board, n -> {
+                if (n instanceof AnalysisValueNotification) {
+                    notifications.add((AnalysisValueNotification) n);
+                }
+            });
+
+            // The last notifications are the best three, worst first
+            List<Integer> expected = new ArrayList<>();
+            for (; moves != 0; moves &= moves - 1) {
+                Board next = new Board(board);
+                next.makeMove(toMove, Long.numberOfTrailingZeros(moves));
+                expected.add(minimax(strategy, toMove, next, toMove.otherPlayer(), 3));
+            }
+            expected.sort((a, b) -> b - a);
+
+            for (int k = 0; k < 3; k++) {
+                AnalysisValueNotification best = notifications.get(notifications.size() - 1 - k);
+                Board next = new Board(board);
+                next.makeMove(toMove, best.getPosition().getLinear());
+
+                assertEquals(board.toString(), expected.get(k).intValue(), best.getValue());
+                assertEquals(board.toString(), minimax(strategy, toMove, next, toMove.otherPlayer(), 3), best.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void multiPvNeedsOverlay() {
+        Board board = openingPosition(new Random(20150621), 20);
+        BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+        int[] multiPv = {1, 4};
+        int[] boards = new int[multiPv.length];
+
+        for (int i = 0; i < multiPv.length; i++) {
+            ComputerPlayer player = newPlayer(toMove, 5);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+            player.setMultiPv(multiPv[i]);
+
+            SearchEngine engine = new SearchEngine(toMove);
+            engine.search(player, board, n -> {
+            });
+            boards[i] = engine.getStats().getBoardsEvaluated();
+        }
+
+        // Without the overlay, the values would be dropped, so they are not searched for
+        assertEquals(boards[0], boards[1]);
+    }
+
+    @Test
+    public void principalVariationLeadsToValue() {
+        Random random = new Random(20150705);
+        Strategy strategy = new AdaptiveStrategy();
+        int depth = 5;
+
+        for (int i = 0; i < 10; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+            ComputerPlayer player = newPlayer(toMove, depth);
+            player.setStrategy(strategy);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+
+            List<PrincipalVariationNotification> notifications = new ArrayList<>();
+            SearchEngine.MiniMaxResult result = new SearchEngine(toMove).search(player, board, n -> {
+                if (n instanceof PrincipalVariationNotification) {
+                    notifications.add((PrincipalVariationNotification) n);
+                }
+            });
+
+            // One line per iteration
+            assertEquals(board.toString(), depth, notifications.size());
+            PrincipalVariationNotification pv = notifications.get(depth - 1);
+            assertEquals(depth, pv.getDepth());
+            assertEquals(result.getPosition(), pv.getMoves().get(0).getPosition());
+            assertTrue(pv.getMoves().size() <= depth);
+
+            Board line = new Board(board);
+            for (Move move : pv.getMoves()) {
+                assertTrue(line.toString(), line.isValidMove(move.getValue(), move.getPosition().getLinear()));
+                line.makeMove(move.getValue(), move.getPosition().getLinear());
+            }
+
+            if (pv.getMoves().size() == depth) {
+                // The line ends at the board that determined the value
+                assertEquals(board.toString(), result.getValue(), strategy.determineBoardValue(toMove, line));
+            }
+        }
+    }
+
+    @Test
+    public void principalVariationNotSentForSolve() throws InterruptedException {
+        Random random = new Random(20150412);
+
+        for (int i = 0; i < 5; i++) {
+            Board board = EndgameSolverTest.endgamePosition(random, 10);
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+            ComputerPlayer player = newPlayer(toMove, 2);
+            player.setEndgameEmpties(10);
+
+            List<PrincipalVariationNotification> notifications = new ArrayList<>();
+            new SearchEngine(toMove).search(player, board, n -> {
+                if (n instanceof PrincipalVariationNotification) {
+                    notifications.add((PrincipalVariationNotification) n);
+                }
+            });
+
+            // Only the heuristic iterations have a line
+            for (PrincipalVariationNotification pv : notifications) {
+                assertTrue(pv.getDepth() <= 2);
+            }
+        }
+    }
+
+    @Test
+    public void principalVariationMatchesPlyAndHash() {
+        List<Move> line = Arrays.asList(
+                new Move(BoardValue.BLACK, new Position(19)),
+                new Move(BoardValue.WHITE, new Position(18)));
+        SearchEngine.PrincipalVariation pv = new SearchEngine.PrincipalVariation(Arrays.asList(11L, 22L), line);
+
+        assertEquals(18, pv.moveAt(1, 22L, 5));
+        assertEquals(5, pv.moveAt(1, 11L, 5));
+        assertEquals(5, pv.moveAt(0, 22L, 5));
+        assertEquals(5, pv.moveAt(2, 22L, 5));
+    }
+
+    @Test
+    public void nodeBudgetReproducible() {
+        Random random = new Random(20150801);
+        int budget = 20000;
+
+        for (int i = 0; i < 6; i++) {
+            // Middle game and endgame positions, the latter are solved
+            Board board = openingPosition(random, i % 2 == 0 ? 20 : 46);
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (Long.bitCount(board.getValidMoves(toMove)) < 2) {
+                continue;
+            }
+
+            SearchEngine.MiniMaxResult[] results = new SearchEngine.MiniMaxResult[2];
+            SearchEngine.Stats[] stats = new SearchEngine.Stats[2];
+            // The same engine, as in a game
+            SearchEngine engine = new SearchEngine(toMove);
+
+            for (int run = 0; run < 2; run++) {
+                ComputerPlayer player = newPlayer(toMove, 30);
+                player.setThreads(4);
+                player.setNodeBudget(budget);
+                player.setRandomSeed(42);
+
+                results[run] = engine.search(player, board, n -> {
+                });
+                stats[run] = engine.getStats();
+            }
+
+            assertEquals(board.toString(), results[0], results[1]);
+            assertEquals(stats[0].getBoardsEvaluated(), stats[1].getBoardsEvaluated());
+            assertEquals(stats[0].getCacheProbes(), stats[1].getCacheProbes());
+            assertEquals(stats[0].getCacheHits(), stats[1].getCacheHits());
+            assertEquals(stats[0].getCutoffs(), stats[1].getCutoffs());
+
+            // The search only ends because the budget is spent
+            assertTrue(stats[0].getBoardsEvaluated() >= budget);
+            assertTrue(stats[0].getBoardsEvaluated() < 2 * budget);
+        }
+    }
+
+    @Test
+    public void bestResultTiesEquallyLikely() {
+        List<SearchEngine.MiniMaxResult> results = Arrays.asList(
+                new SearchEngine.MiniMaxResult(10, new Position(19)),
+                new SearchEngine.MiniMaxResult(5, new Position(26)),
+                new SearchEngine.MiniMaxResult(10, new Position(37)),
+                new SearchEngine.MiniMaxResult(10, new Position(44)));
+        Random random = new Random(7);
+        int[] counts = new int[Board.BOARD_LSIZE];
+
+        for (int i = 0; i < 3000; i++) {
+            counts[SearchEngine.bestResultOf(results, random).getPosition().getLinear()]++;
+        }
+
+        assertEquals(0, counts[26]);
+        for (int pos : new int[]{19, 37, 44}) {
+            assertTrue(String.valueOf(counts[pos]), counts[pos] > 850 && counts[pos] < 1150);
+        }
+
+        assertEquals(
+                SearchEngine.bestResultOf(results, new Random(11)),
+                SearchEngine.bestResultOf(results, new Random(11)));
+    }
+
+    @Test
+    public void partialResultKeepsFirstMove() {
+        Position first = new Position(19);
+        List<SearchEngine.MiniMaxResult> results = Arrays.asList(
+                new SearchEngine.MiniMaxResult(50, first),
+                new SearchEngine.MiniMaxResult(40, new Position(26)));
+
+        assertEquals(results.get(0), SearchEngine.partialResultOf(first, results, -Strategy.INFINITY, Strategy.INFINITY));
+    }
+
+    @Test
+    public void partialResultTakesBetterMove() {
+        Position first = new Position(19);
+        List<SearchEngine.MiniMaxResult> results = Arrays.asList(
+                new SearchEngine.MiniMaxResult(50, first),
+                new SearchEngine.MiniMaxResult(60, new Position(26)),
+                new SearchEngine.MiniMaxResult(50, new Position(37)));
+
+        assertEquals(results.get(1), SearchEngine.partialResultOf(first, results, -Strategy.INFINITY, Strategy.INFINITY));
+    }
+
+    @Test
+    public void partialResultNeedsFirstMove() {
+        List<SearchEngine.MiniMaxResult> results = Arrays.asList(
+                new SearchEngine.MiniMaxResult(60, new Position(26)));
+
+        assertNull(SearchEngine.partialResultOf(new Position(19), results, -Strategy.INFINITY, Strategy.INFINITY));
+    }
+
+    @Test
+    public void partialResultNeedsExactFirstMove() {
+        Position first = new Position(19);
+        List<SearchEngine.MiniMaxResult> results = Arrays.asList(
+                new SearchEngine.MiniMaxResult(95, first),
+                new SearchEngine.MiniMaxResult(98, new Position(26)));
+
+        // The first move failed low, both values are upper bounds
+        assertNull(SearchEngine.partialResultOf(first, results, 100, 200));
+        // The first move failed high, its value is a lower bound
+        assertNull(SearchEngine.partialResultOf(first, results, 0, 95));
+        assertEquals(results.get(1), SearchEngine.partialResultOf(first, results, 90, 200));
+    }
+
+    @Test
+    public void interruptedAfterFailLowKeepsPreviousIteration() {
+        Random random = new Random(20150524);
+        int failedLow = 0;
+
+        for (int i = 0; i < 20; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (Long.bitCount(board.getValidMoves(toMove)) < 3) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 4);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+            // Even depths value lower than odd ones, so the last depth is likely to fail low
+            player.setAspirationWindows(new int[]{1});
+
+            int[] depth = {0};
+            int[] completed = {0};
+            int[] previous = {0};
+            int[] first = {0};
+            int[] latest = {0};
+
+            SearchEngine.MiniMaxResult result = new SearchEngine(toMove).search(player, board, n -> {
+                if (n instanceof EngineNotification) {
+                    depth[0] = ((EngineNotification) n).getDepth();
+                    if (depth[0] == 4) {
+                        if (++completed[0] == 1) {
+                            first[0] = latest[0];
+                        } else if (completed[0] == 2) {
+                            // Interrupt the first attempt at the last depth
+                            player.isInterrupted = true;
+                        }
+                    }
+                } else if (n instanceof AnalysisBoardNotification && depth[0] == 3) {
+                    previous[0] = ((AnalysisBoardNotification) n).getValue();
+                } else if (n instanceof AnalysisValueNotification && ((AnalysisValueNotification) n).isImportant()) {
+                    latest[0] = ((AnalysisValueNotification) n).getValue();
+                }
+            });
+
+            if (first[0] <= previous[0] - 1) {
+                // The first move failed low: the best move of depth 3 is kept
+                failedLow++;
+                assertEquals(board.toString(), previous[0], result.getValue());
+            }
+        }
+
+        assertTrue(failedLow > 0);
+    }
+
+    @Test
+    public void interruptedIterationUsed() {
+        Random random = new Random(20150524);
+
+        for (int i = 0; i < 10; i++) {
+            Board board = openingPosition(random, 10 + random.nextInt(30));
+            BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            if (Long.bitCount(board.getValidMoves(toMove)) < 3) {
+                continue;
+            }
+
+            ComputerPlayer player = newPlayer(toMove, 5);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+
+            // Interrupt once two moves completed at the last depth
+            int[] completed = {0};
+            Set<SearchEngine.MiniMaxResult> lastDepth = new HashSet<>();
+
+            SearchEngine.MiniMaxResult result = new SearchEngine(toMove).search(player, board, n -> {
+                if (n instanceof EngineNotification && ((EngineNotification) n).getDepth() == 5) {
+                    if (++completed[0] == 2) {
+                        player.isInterrupted = true;
+                    }
+                } else if (n instanceof AnalysisValueNotification && completed[0] > 0) {
+                    AnalysisValueNotification analysis = (AnalysisValueNotification) n;
+                    lastDepth.add(new SearchEngine.MiniMaxResult(analysis.getValue(), analysis.getPosition()));
+                }
+            });
+
+            assertTrue(board.toString(), lastDepth.contains(result));
+        }
+    }
+
+    @Test
+    public void ponderingWarmsTheTable() throws InterruptedException {
+        Random random = new Random(20150531);
+        Board board = openingPosition(random, 15);
+        BoardValue human = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+        BoardValue computer = human.otherPlayer();
+
+        ComputerPlayer player = newPlayer(computer, 6);
+        player.setPonderShare(100);
+
+        SearchEngine engine = new SearchEngine(computer);
+        engine.startPondering(player, board);
+        while (engine.isPondering()) {
+            Thread.sleep(10);
+        }
+
+        board.makeMove(human, Long.numberOfTrailingZeros(board.getValidMoves(human)));
+        Assume.assumeTrue(board.hasValidMove(computer));
+
+        player = newPlayer(computer, 6);
+        SearchEngine.MiniMaxResult warm = engine.search(player, board, n -> {
+        });
+        int warmBoards = engine.getStats().getBoardsEvaluated();
+
+        SearchEngine cold = new SearchEngine(computer);
+        SearchEngine.MiniMaxResult result = cold.search(player, board, n -> {
+        });
+
+        assertEquals(result.getValue(), warm.getValue());
+        assertTrue(warmBoards < cold.getStats().getBoardsEvaluated());
+    }
+
+    @Test
+    public void stopPondering() throws InterruptedException {
+        Board board = openingPosition(new Random(20150601), 20);
+        BoardValue human = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+        ComputerPlayer player = newPlayer(human.otherPlayer(), 30);
+        player.setPonderShare(25);
+
+        SearchEngine engine = new SearchEngine(human.otherPlayer());
+        engine.startPondering(player, board);
+        Thread.sleep(200);
+        assertTrue(engine.isPondering());
+
+        long start = System.nanoTime();
+        engine.stopPondering(player);
+
+        assertTrue(!engine.isPondering());
+        assertTrue(System.nanoTime() - start < 100000000L);
+    }
+
+    /**
+     * Compares the time to reach a fixed depth on a fixed set of positions
+     * with 1, 2, 4 and 8 threads, for root splitting, Lazy SMP and
+     * splitting interior nodes.
+     */
+    @Test
+    public void benchmarkThreads() {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        for (String mode : new String[]{"root split", "lazy SMP", "YBWC"}) {
+            long baseline = 0;
+
+            for (int threads : new int[]{1, 2, 4, 8}) {
+                Random random = new Random(20150426);
+                long boards = 0;
+                long start = System.nanoTime();
+
+                for (int i = 0; i < 8; i++) {
+                    Board board = openingPosition(random, 16 + 2 * i);
+                    BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+                    ComputerPlayer player = newPlayer(toMove, 8);
+                    player.setEndgameEmpties(0);
+                    player.setWinLossDrawEmpties(0);
+                    player.setThreads(threads);
+                    player.setLazySmp(mode.equals("lazy SMP"));
+                    player.setSplitInterior(mode.equals("YBWC"));
+
+                    SearchEngine engine = new SearchEngine(toMove);
+                    engine.search(player, board, n -> {
+                    });
+                    boards += engine.getStats().getBoardsEvaluated();
+                }
+
+                long millis = (System.nanoTime() - start) / 1000000;
+                if (threads == 1) {
+                    baseline = millis;
+                }
+
+                System.out.println(String.format("%s, %d threads: %d ms, %d boards, %.2fx speedup",
+                        mode, threads, millis, boards,
+                        (double) baseline / Math.max(millis, 1)));
+            }
+        }
+    }
+
+    /**
+     * Compares move times when every iteration is started until the time
+     * is up, and when the time manager decides which iterations to start.
+     */
+    @Test
+    public void benchmarkTimeManagement() {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        for (boolean adaptive : new boolean[]{false, true}) {
+            Random random = new Random(20150517);
+            int moves = 16;
+            long sum = 0;
+            long sumSquares = 0;
+            long wasted = 0;
+            int depths = 0;
+
+            for (int i = 0; i < moves; i++) {
+                Board board = openingPosition(random, 8 + 2 * i);
+                BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+                ComputerPlayer player = newPlayer(toMove, 30);
+                player.setEndgameEmpties(0);
+                player.setWinLossDrawEmpties(0);
+
+                TimeManager timeManager = adaptive
+                        ? new TimeManager(Duration.ofMillis(1000))
+                        : new TimeManager(Duration.ofMillis(1000)) {
+                    @Override
+                    public boolean startIteration(int depth, int empties) {
+                        super.startIteration(depth, empties);
+                        return true;
+                    }
+                };
+
+                timeManager.start(player);
+                new SearchEngine(toMove).search(player, board, timeManager, n -> {
+                });
+                timeManager.stop();
+
+                long millis = timeManager.getElapsedTime().toMillis();
+                sum += millis;
+                sumSquares += millis * millis;
+                wasted += timeManager.getWastedTime().toMillis();
+                depths += timeManager.getCompletedDepth();
+            }
+
+            double mean = (double) sum / moves;
+            System.out.println(String.format(
+                    "%s: %.0f ms mean move time, %.0f ms standard deviation, %d ms wasted, %.1f mean depth",
+                    adaptive ? "time manager" : "fixed limit",
+                    mean,
+                    Math.sqrt((double) sumSquares / moves - mean * mean),
+                    wasted,
+                    (double) depths / moves));
+        }
+    }
+
+    /**
+     * Compares the boards evaluated for a move after the engine pondered
+     * while the opponent moved, and without pondering.
+     */
+    @Test
+    public void benchmarkPonder() throws InterruptedException {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        Random random = new Random(20150607);
+        long warmBoards = 0;
+        long coldBoards = 0;
+
+        for (int i = 0; i < 8; i++) {
+            Board board = openingPosition(random, 12 + 3 * i);
+            BoardValue human = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+            BoardValue computer = human.otherPlayer();
+
+            ComputerPlayer player = newPlayer(computer, 8);
+            player.setPonderShare(100);
+            player.setEndgameEmpties(0);
+            player.setWinLossDrawEmpties(0);
+
+            SearchEngine engine = new SearchEngine(computer);
+            engine.startPondering(player, board);
+            while (engine.isPondering()) {
+                Thread.sleep(10);
+            }
+
+            long moves = board.getValidMoves(human);
+            board.makeMove(human, BitBoardTest.nthBit(moves, random.nextInt(Long.bitCount(moves))));
+            if (!board.hasValidMove(computer)) {
+                continue;
+            }
+
+            player.isInterrupted = false;
+            engine.search(player, board, n -> {
+            });
+            warmBoards += engine.getStats().getBoardsEvaluated();
+
+            SearchEngine cold = new SearchEngine(computer);
+            cold.search(player, board, n -> {
+            });
+            coldBoards += cold.getStats().getBoardsEvaluated();
+        }
+
+        System.out.println(String.format("without pondering: %d boards, after pondering: %d boards",
+                coldBoards, warmBoards));
+    }
+
+    /**
+     * Compares the boards evaluated to find exact values for the best K
+     * moves with the boards of a single search.
+     */
+    @Test
+    public void benchmarkMultiPv() {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        for (int k : new int[]{1, 2, 3, 4}) {
+            Random random = new Random(20150622);
+            long boards = 0;
+
+            for (int i = 0; i < 8; i++) {
+                Board board = openingPosition(random, 16 + 2 * i);
+                BoardValue toMove = board.hasValidMove(BoardValue.BLACK) ? BoardValue.BLACK : BoardValue.WHITE;
+
+                ComputerPlayer player = newPlayer(toMove, 8);
+                player.setEndgameEmpties(0);
+                player.setWinLossDrawEmpties(0);
+                player.setMultiPv(k);
+                player.setShowOverlay(true);
+
+                SearchEngine engine = new SearchEngine(toMove);
+                engine.search(player, board, n -> {
+                });
+                boards += engine.getStats().getBoardsEvaluated();
+            }
+
+            System.out.println(String.format("%d best moves: %d boards", k, boards));
+        }
+    }
+
+    /**
+     * Compares the transposition table hit rate over self-play games when
+     * the table is discarded after every move and when it is kept.
+     */
+    @Test
+    public void benchmarkHitRate() {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+
+        for (boolean keep : new boolean[]{false, true}) {
+            Random random = new Random(20150308);
+            long probes = 0;
+            long found = 0;
+            long boards = 0;
+
+            for (int game = 0; game < 4; game++) {
+                Board board = openingPosition(random, 4);
+                BoardValue toMove = BoardValue.BLACK;
+                SearchEngine[] engines = {new SearchEngine(BoardValue.BLACK), new SearchEngine(BoardValue.WHITE)};
+
+                while (board.hasValidMove(BoardValue.BLACK) || board.hasValidMove(BoardValue.WHITE)) {
+                    if (board.hasValidMove(toMove)) {
+                        int index = toMove == BoardValue.BLACK ? 0 : 1;
+                        if (!keep) {
+                            engines[index] = new SearchEngine(toMove);
+                        }
+
+                        SearchEngine.MiniMaxResult result = engines[index].search(newPlayer(toMove, 6), board, n -> {
+                        });
+                        SearchEngine.Stats stats = engines[index].getStats();
+
+                        probes += stats.getCacheProbes();
+                        found += Math.round(stats.getCacheHitRate() * stats.getCacheProbes());
+                        boards += stats.getBoardsEvaluated();
+
+                        board.makeMove(toMove, result.getPosition().getLinear());
+                    }
+
+                    toMove = toMove.otherPlayer();
+                }
+            }
+
+            System.out.println(String.format("%s table: %d probes, %.1f%% hit rate, %d boards",
+                    keep ? "kept" : "fresh", probes, 100.0 * found / probes, boards));
+        }
+    }
+
+    /**
+     * Plain minimax without any pruning.
+     */
+    static int minimax(Strategy strategy, BoardValue color, Board board, BoardValue toMove, int depth) {
+        if (depth == 0) {
+            return strategy.determineBoardValue(color, board);
+        }
+
+        long moves = board.getValidMoves(toMove);
+        if (moves == 0) {
+            return board.hasValidMove(toMove.otherPlayer())
+                    ? minimax(strategy, color, board, toMove.otherPlayer(), depth)
+                    : strategy.determineFinalScore(color, board);
+        }
+
+        int best = toMove == color ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (; moves != 0; moves &= moves - 1) {
+            Board next = new Board(board);
+            next.makeMove(toMove, Long.numberOfTrailingZeros(moves));
+
+            int value = minimax(strategy, color, next, toMove.otherPlayer(), depth - 1);
+            best = toMove == color ? Math.max(best, value) : Math.min(best, value);
+        }
+
+        return best;
+    }
+
+    static ComputerPlayer newPlayer(BoardValue color, int depth) {
+        ComputerPlayer player = new ComputerPlayer(color);
+        player.setMaxDepth(depth);
+        player.setMaxTurnTime(Duration.ofMinutes(10));
+        player.setThreads(1);
+
+        return player;
+    }
+
+    /**
+     * Plays random moves from the start position.
+     */
+    static Board openingPosition(Random random, int plies) {
+        Board board = new Board();
+        BoardValue toMove = BoardValue.BLACK;
+
+        for (int ply = 0; ply < plies; ply++) {
+            List<Integer> moves = new ArrayList<>();
+            for (int pos = 0; pos < Board.BOARD_LSIZE; pos++) {
+                if (board.isValidMove(toMove, pos)) {
+                    moves.add(pos);
+                }
+            }
+
+            if (!moves.isEmpty()) {
+                board.makeMove(toMove, moves.get(random.nextInt(moves.size())));
+            }
+            toMove = toMove.otherPlayer();
+        }
+
+        return board;
+    }
+}
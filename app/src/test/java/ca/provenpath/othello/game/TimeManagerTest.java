@@ -0,0 +1,114 @@
+package ca.provenpath.othello.game;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeManagerTest {
+
+    private static final long MILLIS = 1000000;
+
+    private long now = 0;
+
+    private TimeManager newTimeManager() {
+        return new TimeManager(Duration.ofMillis(1000), () -> now);
+    }
+
+    /**
+     * Runs an iteration that takes the given time.
+     */
+    private void iterate(TimeManager timeManager, int depth, long millis, int best) {
+        assertTrue(timeManager.startIteration(depth, 40));
+        now += millis * MILLIS;
+        timeManager.endIteration(depth, new Position(best));
+    }
+
+    @Test
+    public void firstIterationAlwaysStarts() {
+        TimeManager timeManager = newTimeManager();
+        now = 2000 * MILLIS;
+
+        assertTrue(timeManager.startIteration(1, 40));
+    }
+
+    @Test
+    public void estimateFromBranchingFactor() {
+        TimeManager timeManager = newTimeManager();
+
+        // Before a ratio can be measured, the default applies
+        iterate(timeManager, 1, 2, 19);
+        assertEquals((long) (TimeManager.DEFAULT_BRANCHING * 2 * MILLIS), timeManager.estimate(2, 40));
+
+        iterate(timeManager, 2, 8, 19);
+        assertEquals(4 * 8 * MILLIS, timeManager.estimate(3, 40));
+
+        // Smoothed with the previous ratio
+        iterate(timeManager, 3, 16, 19);
+        assertEquals((long) (Math.sqrt(4 * 2) * 16 * MILLIS), timeManager.estimate(4, 40));
+    }
+
+    @Test
+    public void branchingLimitedByEmpties() {
+        TimeManager timeManager = newTimeManager();
+        iterate(timeManager, 1, 1, 19);
+        iterate(timeManager, 2, 8, 19);
+
+        assertEquals(3 * 8 * MILLIS, timeManager.estimate(3, 5));
+    }
+
+    @Test
+    public void iterationThatCannotFinishIsNotStarted() {
+        TimeManager timeManager = newTimeManager();
+        iterate(timeManager, 1, 10, 19);
+        iterate(timeManager, 2, 100, 19);
+
+        // 110 ms spent, 1000 ms more expected
+        assertFalse(timeManager.startIteration(3, 40));
+        assertEquals(2, timeManager.getCompletedDepth());
+    }
+
+    @Test
+    public void moreTimeWhenBestMoveChanges() {
+        TimeManager stable = newTimeManager();
+        iterate(stable, 1, 100, 19);
+        iterate(stable, 2, 110, 19);
+        iterate(stable, 3, 120, 19);
+        iterate(stable, 4, 130, 19);
+
+        // 460 ms spent, past the soft limit
+        assertFalse(stable.startIteration(5, 40));
+
+        now = 0;
+        TimeManager unstable = newTimeManager();
+        iterate(unstable, 1, 100, 19);
+        iterate(unstable, 2, 110, 19);
+        iterate(unstable, 3, 120, 19);
+        iterate(unstable, 4, 130, 26);
+
+        assertTrue(unstable.startIteration(5, 40));
+    }
+
+    @Test
+    public void stopAtTheEndOfTheGame() {
+        TimeManager timeManager = newTimeManager();
+        iterate(timeManager, 1, 1, 19);
+
+        assertFalse(timeManager.startIteration(2, 1));
+    }
+
+    @Test
+    public void wastedTime() {
+        TimeManager timeManager = newTimeManager();
+        iterate(timeManager, 1, 10, 19);
+
+        assertTrue(timeManager.startIteration(2, 40));
+        now += 30 * MILLIS;
+
+        assertEquals(Duration.ofMillis(30), timeManager.getWastedTime());
+        assertEquals(Duration.ofMillis(40), timeManager.getElapsedTime());
+    }
+}
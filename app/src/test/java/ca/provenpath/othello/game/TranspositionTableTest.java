@@ -0,0 +1,81 @@
+package ca.provenpath.othello.game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void putGet() {
+        TranspositionTable table = new TranspositionTable(4);
+
+        table.put(42L, Strategy.LOSS_BASE, 7, TranspositionTable.Flag.UPPERBOUND, 63);
+
+        long entry = table.get(42L);
+        assertEquals(Strategy.LOSS_BASE, TranspositionTable.valueOf(entry));
+        assertEquals(7, TranspositionTable.depthOf(entry));
+        assertEquals(TranspositionTable.Flag.UPPERBOUND, TranspositionTable.flagOf(entry));
+        assertEquals(63, TranspositionTable.bestMoveOf(entry));
+
+        table.put(42L, -5, 2, TranspositionTable.Flag.EXACT, TranspositionTable.NO_MOVE);
+
+        entry = table.get(42L);
+        assertEquals(-5, TranspositionTable.valueOf(entry));
+        assertEquals(TranspositionTable.NO_MOVE, TranspositionTable.bestMoveOf(entry));
+
+        assertEquals(TranspositionTable.MISS, table.get(43L));
+    }
+
+    @Test
+    public void replacement() {
+        TranspositionTable table = new TranspositionTable(4);
+        long deep = 0x10;
+        long shallow = 0x20;
+        long recent = 0x30;
+
+        // All keys share a bucket
+        table.put(deep, 1, 8, TranspositionTable.Flag.EXACT, 0);
+        table.put(shallow, 2, 1, TranspositionTable.Flag.EXACT, 0);
+        assertEquals(1, TranspositionTable.valueOf(table.get(deep)));
+        assertEquals(2, TranspositionTable.valueOf(table.get(shallow)));
+
+        table.put(recent, 3, 1, TranspositionTable.Flag.EXACT, 0);
+        assertEquals(1, TranspositionTable.valueOf(table.get(deep)));
+        assertEquals(TranspositionTable.MISS, table.get(shallow));
+        assertEquals(3, TranspositionTable.valueOf(table.get(recent)));
+
+        table.clear();
+        assertEquals(TranspositionTable.MISS, table.get(deep));
+    }
+
+    @Test
+    public void generations() {
+        TranspositionTable table = new TranspositionTable(4);
+        long deep = 0x10;
+        long shallow = 0x20;
+        long next = 0x30;
+
+        table.put(deep, 1, 8, TranspositionTable.Flag.EXACT, 0);
+        assertEquals(0, TranspositionTable.generationOf(table.get(deep)));
+
+        // Old entries survive a new generation...
+        table.nextGeneration();
+        assertEquals(1, TranspositionTable.valueOf(table.get(deep)));
+
+        // ...but give way to shallower new ones
+        table.put(shallow, 2, 1, TranspositionTable.Flag.EXACT, 0);
+        assertEquals(TranspositionTable.MISS, table.get(deep));
+        assertEquals(1, TranspositionTable.generationOf(table.get(shallow)));
+
+        // Entries of the current generation are preferred by depth again
+        table.put(next, 3, 0, TranspositionTable.Flag.EXACT, 0);
+        assertEquals(2, TranspositionTable.valueOf(table.get(shallow)));
+        assertEquals(3, TranspositionTable.valueOf(table.get(next)));
+
+        for (int i = 0; i < 255; i++) {
+            table.nextGeneration();
+        }
+        assertEquals(0, table.getGeneration());
+    }
+}